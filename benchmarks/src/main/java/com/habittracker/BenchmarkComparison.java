@@ -0,0 +1,84 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files benchmark by benchmark and flags every
+ * score that got worse by more than a threshold. Throughput is better when
+ * higher; every other mode measures time and is better when lower.
+ *
+ * <p>Usage: compare &lt;baseline.json&gt; &lt;current.json&gt; [threshold-percent, default 10]
+ * <br>Prints one CSV line per benchmark and exits with 1 if anything regressed.
+ */
+final class BenchmarkComparison {
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    
+    private BenchmarkComparison() {
+    }
+    
+    static int run(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: compare <baseline.json> <current.json> [threshold-percent]");
+            return 2;
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        
+        int regressions = 0;
+        System.out.println("benchmark,baseline,current,unit,change_percent,status");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode metric = entry.getValue().path("primaryMetric");
+            double score = metric.path("score").asDouble();
+            if (before == null) {
+                System.out.printf("%s,,%.3f,%s,,new%n", entry.getKey(), score, metric.path("scoreUnit").asText());
+                continue;
+            }
+            
+            double previous = before.path("primaryMetric").path("score").asDouble();
+            double change = previous == 0 ? 0 : (score - previous) / previous * 100;
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double worse = higherIsBetter ? -change : change;
+            String status = worse > threshold ? "REGRESSION" : worse < -threshold ? "improved" : "ok";
+            if (worse > threshold) {
+                regressions++;
+            }
+            System.out.printf("%s,%.3f,%.3f,%s,%+.1f,%s%n", entry.getKey(), previous, score,
+                              metric.path("scoreUnit").asText(), change, status);
+        }
+        
+        if (regressions > 0) {
+            System.err.printf("%d benchmark%s regressed by more than %.0f%%%n",
+                              regressions, regressions == 1 ? "" : "s", threshold);
+            return 1;
+        }
+        return 0;
+    }
+    
+    /**
+     * Results keyed by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> param = fields.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.habittracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Generated habit histories for the benchmarks. The logs are spread evenly
+ * over the habits, one per day running back from {@link #TODAY}, and every
+ * tenth day is recorded as not completed so streaks have real runs to scan.
+ */
+final class BenchmarkData {
+    static final LocalDate TODAY = LocalDate.of(2026, 1, 1);
+    
+    private BenchmarkData() {
+    }
+    
+    static String habitName(int habit) {
+        return "habit-" + habit;
+    }
+    
+    static List<Habit> habits(int count) {
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            habits.add(new Habit(i + 1, habitName(i), TODAY.minusYears(1), "Benchmark habit " + i, null));
+        }
+        return habits;
+    }
+    
+    static LogTable logs(int habits, int logs) {
+        LogTable.Builder builder = LogTable.builder();
+        for (int i = 0; i < logs; i++) {
+            int daysBack = i / habits;
+            builder.add(i % habits + 1, TODAY.minusDays(daysBack), daysBack % 10 != 9);
+        }
+        return builder.build();
+    }
+    
+    static HabitData data(int habits, int logs) {
+        return new HabitData(habits(habits), logs(habits, logs), null, null);
+    }
+    
+    /**
+     * Point user.home at a new temporary directory, so DataManager and
+     * HabitService never touch the real ~/.habit-tracker
+     */
+    static Path useTemporaryHome() {
+        try {
+            Path home = Files.createTempDirectory("habit-bench");
+            System.setProperty("user.home", home.toString());
+            return home;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    static void delete(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.habittracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry point of benchmarks.jar. Runs JMH with its usual options, writing
+ * the results as JSON to jmh-results.json unless -rf/-rff say otherwise, or
+ * one of the tools:
+ * <ul>
+ * <li>{@code compare} - compares two such result files</li>
+ * <li>{@code generate} - writes a synthetic habit history, see HistoryGenerator</li>
+ * <li>{@code load-test} - replays a mixed command workload, see LoadTest</li>
+ * <li>{@code check-collections} - checks PersistentMap and LogTable against the JDK collections, see CollectionCheck</li>
+ * <li>{@code check-storage} - runs storage scenarios end to end, see StorageCheck</li>
+ * </ul>
+ */
+public final class BenchmarkMain {
+    static final String DEFAULT_RESULTS = "jmh-results.json";
+    
+    private BenchmarkMain() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "compare":
+                    System.exit(BenchmarkComparison.run(rest));
+                    break;
+                case "generate":
+                    System.exit(HistoryGenerator.run(rest));
+                    break;
+                case "load-test":
+                    System.exit(LoadTest.run(rest));
+                    break;
+                case "check-collections":
+                    System.exit(CollectionCheck.run(rest));
+                    break;
+                case "check-storage":
+                    System.exit(StorageCheck.run(rest));
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.add("-rf");
+            jmhArgs.add("json");
+        }
+        if (!jmhArgs.contains("-rff")) {
+            jmhArgs.add("-rff");
+            jmhArgs.add(DEFAULT_RESULTS);
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+    
+    /**
+     * The {@code --name value} options of a tool
+     */
+    static final class Options {
+        private final Map<String, String> values = new HashMap<>();
+        
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                if (!args[i].startsWith("--") || i + 1 == args.length) {
+                    throw new IllegalArgumentException("Expected --name value but got " + args[i]);
+                }
+                options.values.put(args[i].substring(2), args[++i]);
+            }
+            return options;
+        }
+        
+        String get(String name, String defaultValue) {
+            return values.getOrDefault(name, defaultValue);
+        }
+        
+        int getInt(String name, int defaultValue) {
+            return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+        }
+        
+        long getLong(String name, long defaultValue) {
+            return values.containsKey(name) ? Long.parseLong(values.get(name)) : defaultValue;
+        }
+        
+        double getDouble(String name, double defaultValue) {
+            return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+        }
+    }
+}
\ No newline at end of file
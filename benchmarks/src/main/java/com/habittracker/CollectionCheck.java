@@ -0,0 +1,254 @@
+package com.habittracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Runs random operations against PersistentMap and LogTable and the same
+ * operations against java.util.HashMap and ArrayList, failing on the first
+ * difference. Old versions are kept and checked again at the end, since
+ * both structures share their insides between versions.
+ *
+ * <p>Usage: check-collections [--ops 100000] [--seed 1]
+ */
+final class CollectionCheck {
+    // Versions kept for the final check of all of them
+    private static final int KEPT_VERSIONS = 200;
+    
+    private final Random random;
+    
+    private CollectionCheck(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    static int run(String[] args) {
+        BenchmarkMain.Options options = BenchmarkMain.Options.parse(args);
+        int ops = options.getInt("ops", 100_000);
+        CollectionCheck check = new CollectionCheck(options.getLong("seed", 1));
+        try {
+            check.persistentMap("Integer keys", ops, i -> i);
+            check.persistentMap("String keys", ops, i -> "habit-" + i);
+            check.persistentMap("colliding keys", ops, Colliding::new);
+            check.logTable(ops);
+        } catch (IllegalStateException e) {
+            System.err.println("✗ " + e.getMessage());
+            return 1;
+        }
+        System.out.println("✓ PersistentMap and LogTable match HashMap and ArrayList over " + ops + " operations each");
+        return 0;
+    }
+    
+    private void persistentMap(String name, int ops, IntFunction<Object> keys) {
+        PersistentMap<Object, Integer> map = PersistentMap.empty();
+        Map<Object, Integer> expected = new HashMap<>();
+        List<PersistentMap<Object, Integer>> versions = new ArrayList<>();
+        List<Map<Object, Integer>> expectedVersions = new ArrayList<>();
+        int keyRange = Math.max(16, ops / 20);
+        
+        for (int i = 0; i < ops; i++) {
+            Object key = keys.apply(random.nextInt(keyRange));
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            } else {
+                int value = random.nextInt();
+                map = map.with(key, value);
+                expected.put(key, value);
+            }
+            check(map.size() == expected.size(), name + ": size " + map.size() + " after " + i
+                  + " operations, expected " + expected.size());
+            check(expected.get(key) == null ? !map.containsKey(key) : expected.get(key).equals(map.get(key)),
+                  name + ": wrong value for " + key + " after " + i + " operations");
+            if (i % (ops / KEPT_VERSIONS + 1) == 0) {
+                versions.add(map);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+        
+        versions.add(map);
+        expectedVersions.add(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            PersistentMap<Object, Integer> version = versions.get(v);
+            Map<Object, Integer> wanted = expectedVersions.get(v);
+            check(version.equals(wanted) && wanted.equals(version), name + ": version " + v + " changed");
+            check(version.entrySet().size() == wanted.size() && countEntries(version) == wanted.size(),
+                  name + ": version " + v + " iterates over the wrong number of entries");
+        }
+        if (map.keySet().stream().allMatch(key -> key instanceof Integer)) {
+            int previous = Integer.MIN_VALUE;
+            for (Object key : map.keySet()) {
+                check((Integer) key > previous, name + ": keys out of order at " + key);
+                previous = (Integer) key;
+            }
+        }
+    }
+    
+    private static int countEntries(Map<?, ?> map) {
+        int count = 0;
+        for (Map.Entry<?, ?> ignored : map.entrySet()) {
+            count++;
+        }
+        return count;
+    }
+    
+    private void logTable(int ops) {
+        LogTable table = LogTable.empty();
+        List<Log> expected = new ArrayList<>();
+        List<LogTable> versions = new ArrayList<>();
+        List<List<Log>> expectedVersions = new ArrayList<>();
+        versions.add(table);
+        expectedVersions.add(new ArrayList<>(expected));
+        int days = Math.max(64, ops / 10);
+        
+        for (int i = 0; i < ops; i++) {
+            // Mostly the newest version, as HabitService does, sometimes an older one
+            if (random.nextInt(20) == 0) {
+                int v = random.nextInt(versions.size());
+                table = versions.get(v);
+                expected = new ArrayList<>(expectedVersions.get(v));
+            }
+            Log log = new Log(1 + random.nextInt(8), random.nextInt(days), random.nextBoolean());
+            int index = indexOf(expected, log);
+            boolean present = index >= 0;
+            check(table.contains(log.habitId, log.date()) == present,
+                  "LogTable: contains(" + log + ") is " + !present + " after " + i + " operations");
+            if (!present && random.nextBoolean()) {
+                table = table.append(log.habitId, log.date(), log.completed);
+                expected.add(log);
+            } else {
+                table = table.put(log.habitId, log.date(), log.completed);
+                if (present) {
+                    expected.set(index, log);
+                } else {
+                    expected.add(log);
+                }
+            }
+            check(table.size() == expected.size(), "LogTable: size " + table.size() + " after " + i
+                  + " operations, expected " + expected.size());
+            if (i % (ops / KEPT_VERSIONS + 1) == 0) {
+                versions.add(table);
+                expectedVersions.add(new ArrayList<>(expected));
+            }
+        }
+        
+        versions.add(table);
+        expectedVersions.add(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            checkTable(versions.get(v), expectedVersions.get(v), "version " + v);
+        }
+        BitSet kept = new BitSet();
+        kept.set(2);
+        kept.set(5);
+        List<Log> retained = new ArrayList<>();
+        for (Log log : expected) {
+            if (kept.get(log.habitId)) {
+                retained.add(log);
+            }
+        }
+        checkTable(table.retain(kept), retained, "retained table");
+    }
+    
+    private static int indexOf(List<Log> logs, Log log) {
+        for (int i = 0; i < logs.size(); i++) {
+            if (logs.get(i).habitId == log.habitId && logs.get(i).day == log.day) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static void checkTable(LogTable table, List<Log> expected, String name) {
+        List<Log> visited = new ArrayList<>();
+        table.forEach((habitId, epochDay, completed) -> visited.add(new Log(habitId, epochDay, completed)));
+        check(visited.equals(expected), "LogTable: " + name + " visits " + visited.size() + " logs that differ from the "
+              + expected.size() + " expected");
+        
+        List<HabitLog> list = table.asList(id -> "habit-" + id);
+        check(list.size() == expected.size(), "LogTable: " + name + " lists " + list.size() + " logs");
+        for (int i = 0; i < expected.size(); i++) {
+            Log log = expected.get(i);
+            HabitLog listed = list.get(i);
+            check(listed.getHabitName().equals("habit-" + log.habitId) && listed.getDate().equals(log.date())
+                  && listed.isCompleted() == log.completed, "LogTable: " + name + " lists " + listed + " at " + i
+                  + ", expected " + log);
+            check(table.contains(log.habitId, log.date()), "LogTable: " + name + " does not contain " + log);
+        }
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+    
+    /**
+     * A log as the reference list holds it
+     */
+    private static final class Log {
+        final int habitId;
+        final long day;
+        final boolean completed;
+        
+        Log(int habitId, long day, boolean completed) {
+            this.habitId = habitId;
+            this.day = day;
+            this.completed = completed;
+        }
+        
+        LocalDate date() {
+            return LocalDate.ofEpochDay(day);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Log)) {
+                return false;
+            }
+            Log log = (Log) other;
+            return habitId == log.habitId && day == log.day && completed == log.completed;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (habitId * 31 + Long.hashCode(day)) * 2 + (completed ? 1 : 0);
+        }
+        
+        @Override
+        public String toString() {
+            return habitId + "@" + date() + (completed ? " done" : " missed");
+        }
+    }
+    
+    /**
+     * A key with only seven hash codes, so most keys share theirs and end up
+     * in the map's collision nodes
+     */
+    private static final class Colliding {
+        final int value;
+        
+        Colliding(int value) {
+            this.value = value;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Colliding && ((Colliding) other).value == value;
+        }
+        
+        @Override
+        public int hashCode() {
+            return value % 7;
+        }
+        
+        @Override
+        public String toString() {
+            return "colliding-" + value;
+        }
+    }
+}
\ No newline at end of file
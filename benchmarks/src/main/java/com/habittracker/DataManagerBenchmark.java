@@ -0,0 +1,66 @@
+package com.habittracker;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving a full snapshot in each storage format. A save is
+ * durable (fsync and rename), so it includes the disk's flush latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DataManagerBenchmark {
+    @Param({"JSON", "BINARY"})
+    public DataManager.Format format;
+    
+    @Param({"10", "100", "1000"})
+    public int habits;
+    
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int logs;
+    
+    private Path home;
+    private DataManager dataManager;
+    private HabitData data;
+    
+    @Setup(Level.Trial)
+    public void createData() {
+        home = BenchmarkData.useTemporaryHome();
+        dataManager = new DataManager();
+        data = BenchmarkData.data(habits, logs);
+        dataManager.migrate(format, data);
+        dataManager.saveData(data);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        BenchmarkData.delete(home);
+    }
+    
+    @Benchmark
+    public HabitData loadData() {
+        return dataManager.loadData();
+    }
+    
+    @Benchmark
+    public void saveData() {
+        dataManager.saveData(data);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.habittracker;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Logging and lookups against a loaded HabitService. Saves are deferred to
+ * shutdown, so logHabit does no data file I/O. It still goes through the
+ * full mutation path, though: every call opens habits.lock, takes an OS
+ * file lock and stats the data files for the change stamp before the
+ * in-memory update (index, log table, streak cache). Those system calls
+ * are a large part of what it measures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dhabittracker.durability=on-shutdown"})
+public class HabitServiceBenchmark {
+    @Param({"10", "100", "1000"})
+    public int habits;
+    
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int logs;
+    
+    private Path home;
+    private HabitService service;
+    private long daysLogged;
+    private int historyDays;
+    
+    @Setup(Level.Trial)
+    public void createService() {
+        home = BenchmarkData.useTemporaryHome();
+        DataManager dataManager = new DataManager();
+        // Binary keeps seeding the larger sizes quick
+        dataManager.migrate(DataManager.Format.BINARY, BenchmarkData.data(habits, logs));
+        service = new HabitService();
+        service.startWriteBehind();
+        historyDays = Math.max(1, logs / habits);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        // Stop the write-behind thread before its directory goes away
+        service.close();
+        BenchmarkData.delete(home);
+    }
+    
+    /**
+     * Log a new day for one habit, past the end of its history
+     */
+    @Benchmark
+    public boolean logHabit() {
+        daysLogged++;
+        return service.logHabit(BenchmarkData.habitName((int) (daysLogged % habits)),
+                                BenchmarkData.TODAY.plusDays(daysLogged / habits + 1));
+    }
+    
+    @Benchmark
+    public boolean isHabitLoggedForDate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate date = BenchmarkData.TODAY.minusDays(random.nextInt(historyDays));
+        return service.isHabitLoggedForDate(BenchmarkData.habitName(random.nextInt(habits)), date);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.habittracker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes a synthetic habit history into a habit tracker home directory, for
+ * sizing and load tests. Every habit follows one completion pattern:
+ * <ul>
+ * <li>{@code random} - each day done with the given density</li>
+ * <li>{@code streaky} - runs of done and missed days, long on average but
+ *     still averaging the density</li>
+ * <li>{@code weekdays} - done on weekdays, rarely on weekends</li>
+ * <li>{@code fading} - a resolution that starts at the density and fades
+ *     to a quarter of it</li>
+ * </ul>
+ * {@code mixed}, the default, gives the habits these patterns in turn.
+ *
+ * <p>Usage: generate --home &lt;dir&gt; [--habits 20] [--days 365] [--density 0.7]
+ * [--pattern mixed] [--format json|binary] [--seed 1] [--end yyyy-mm-dd]
+ */
+final class HistoryGenerator {
+    enum Pattern {
+        RANDOM, STREAKY, WEEKDAYS, FADING
+    }
+    
+    // Chance a streaky habit done yesterday is done today too
+    private static final double STREAK_STAY = 0.9;
+    
+    private final int habits;
+    private final int days;
+    private final double density;
+    private final Pattern pattern;
+    private final LocalDate end;
+    private final Random random;
+    
+    /**
+     * @param pattern the pattern of every habit, or null to mix them
+     */
+    HistoryGenerator(int habits, int days, double density, Pattern pattern, LocalDate end, long seed) {
+        if (habits < 1 || days < 1) {
+            throw new IllegalArgumentException("Need at least one habit and one day");
+        }
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + density);
+        }
+        this.habits = habits;
+        this.days = days;
+        this.density = density;
+        this.pattern = pattern;
+        this.end = end;
+        this.random = new Random(seed);
+    }
+    
+    static int run(String[] args) {
+        BenchmarkMain.Options options = BenchmarkMain.Options.parse(args);
+        String home = options.get("home", null);
+        if (home == null) {
+            System.err.println("Usage: generate --home <dir> [--habits 20] [--days 365] [--density 0.7]"
+                               + " [--pattern mixed|random|streaky|weekdays|fading] [--format json|binary]"
+                               + " [--seed 1] [--end yyyy-mm-dd]");
+            return 2;
+        }
+        String patternName = options.get("pattern", "mixed").toUpperCase(Locale.ROOT);
+        HistoryGenerator generator = new HistoryGenerator(
+            options.getInt("habits", 20),
+            options.getInt("days", 365),
+            options.getDouble("density", 0.7),
+            "MIXED".equals(patternName) ? null : Pattern.valueOf(patternName),
+            LocalDate.parse(options.get("end", LocalDate.now().toString())),
+            options.getLong("seed", 1));
+        DataManager.Format format = DataManager.Format.valueOf(options.get("format", "json").toUpperCase(Locale.ROOT));
+        
+        long started = System.nanoTime();
+        HabitData data = generator.generate();
+        String file = write(Paths.get(home), data, format);
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        
+        System.out.printf("Wrote %d habits with %d logs over %d days to %s in %d ms%n",
+                          data.getHabits().size(), data.getLogTable().size(), generator.days, file, millis);
+        return 0;
+    }
+    
+    HabitData generate() {
+        LocalDate start = end.minusDays(days - 1);
+        List<Habit> habitList = new ArrayList<>(habits);
+        Pattern[] patterns = new Pattern[habits];
+        boolean[] doneYesterday = new boolean[habits];
+        for (int h = 0; h < habits; h++) {
+            patterns[h] = pattern != null ? pattern : Pattern.values()[h % Pattern.values().length];
+            habitList.add(new Habit(h + 1, BenchmarkData.habitName(h), start,
+                                    patterns[h].name().toLowerCase(Locale.ROOT) + " habit", null));
+        }
+        
+        // Day by day, the order a real history is logged in
+        LogTable.Builder logs = LogTable.builder();
+        for (int d = 0; d < days; d++) {
+            LocalDate date = start.plusDays(d);
+            for (int h = 0; h < habits; h++) {
+                boolean done = random.nextDouble() < chance(patterns[h], date, d, doneYesterday[h]);
+                if (done) {
+                    logs.add(h + 1, date, true);
+                }
+                doneYesterday[h] = done;
+            }
+        }
+        return new HabitData(habitList, logs.build(), null, null);
+    }
+    
+    private double chance(Pattern pattern, LocalDate date, int day, boolean doneYesterday) {
+        switch (pattern) {
+            case STREAKY:
+                if (doneYesterday) {
+                    return STREAK_STAY;
+                }
+                // Chance to start a run that makes the long-run share of done days the density
+                return density >= 1 ? 1 : Math.min(1, density * (1 - STREAK_STAY) / (1 - density));
+            case WEEKDAYS:
+                boolean weekend = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
+                return weekend ? density / 4 : density;
+            case FADING:
+                return density * (1 - 0.75 * day / Math.max(1, days - 1));
+            case RANDOM:
+            default:
+                return density;
+        }
+    }
+    
+    /**
+     * Save the data as the habit tracker data of the given home directory
+     *
+     * @return the data file written
+     */
+    static String write(Path home, HabitData data, DataManager.Format format) {
+        try {
+            Files.createDirectories(home);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create " + home, e);
+        }
+        String previousHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.toAbsolutePath().toString());
+        try {
+            DataManager dataManager = new DataManager();
+            dataManager.migrate(format, data);
+            dataManager.saveData(data);
+            return dataManager.getDataFilePath();
+        } finally {
+            System.setProperty("user.home", previousHome);
+        }
+    }
+}
\ No newline at end of file
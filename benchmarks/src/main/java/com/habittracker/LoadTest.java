@@ -0,0 +1,245 @@
+package com.habittracker;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a mixed command workload in one process and reports latency
+ * percentiles, throughput and allocation per operation. Commands go through
+ * HabitTrackerCLI.processCommand by default, the way the daemon and shell
+ * run them, or straight to HabitService with --through service.
+ *
+ * <p>A delete is followed by an untimed add of the same habit, so the data
+ * keeps its size for the whole run. Saves use write-behind as in the daemon;
+ * the policy follows habittracker.durability.
+ *
+ * <p>Usage: load-test [--home &lt;dir&gt;] [--ops 10000] [--mix log=70,status=15,list=10,delete=5]
+ * [--through cli|service] [--seed 1], plus the generate options to create data
+ * when --home has none
+ */
+final class LoadTest {
+    enum Operation {
+        LOG, STATUS, LIST, DELETE
+    }
+    
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+    
+    private final HabitService service;
+    private final HabitTrackerCLI cli;
+    private final List<String> habitNames;
+    private final Random random;
+    
+    private LoadTest(HabitService service, boolean throughCli, long seed) {
+        this.service = service;
+        this.cli = throughCli ? new HabitTrackerCLI(service, null, null, DISCARD, DISCARD) : null;
+        this.random = new Random(seed);
+        this.habitNames = Arrays.asList(service.listHabits().stream().map(Habit::getName).toArray(String[]::new));
+    }
+    
+    static int run(String[] args) throws Exception {
+        BenchmarkMain.Options options = BenchmarkMain.Options.parse(args);
+        int ops = options.getInt("ops", 10_000);
+        Map<Operation, Integer> mix = parseMix(options.get("mix", "log=70,status=15,list=10,delete=5"));
+        boolean throughCli = !"service".equalsIgnoreCase(options.get("through", "cli"));
+        
+        Path home;
+        boolean temporary = options.get("home", null) == null;
+        if (temporary) {
+            home = Files.createTempDirectory("habit-load");
+        } else {
+            home = Paths.get(options.get("home", null));
+        }
+        try {
+            if (!Files.exists(home.resolve(".habit-tracker"))) {
+                String[] generateArgs = Arrays.copyOf(args, args.length + 2);
+                generateArgs[args.length] = "--home";
+                generateArgs[args.length + 1] = home.toString();
+                HistoryGenerator.run(generateArgs);
+            }
+            
+            System.setProperty("user.home", home.toAbsolutePath().toString());
+            long loadStarted = System.nanoTime();
+            HabitService service = new HabitService();
+            System.out.printf("Loaded %d habits in %.1f ms%n", service.listHabits().size(),
+                              (System.nanoTime() - loadStarted) / 1e6);
+            service.startWriteBehind();
+            
+            LoadTest test = new LoadTest(service, throughCli, options.getLong("seed", 1));
+            // Warm up the JIT on a tenth of the workload, untimed
+            test.replay(Math.max(1, ops / 10), mix, null);
+            Map<Operation, Recorder> results = new LinkedHashMap<>();
+            for (Operation operation : Operation.values()) {
+                results.put(operation, new Recorder(ops));
+            }
+            long started = System.nanoTime();
+            test.replay(ops, mix, results);
+            long elapsed = System.nanoTime() - started;
+            // Heap still holding the loaded data
+            System.gc();
+            long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            service.close();
+            
+            report(results, ops, elapsed, heapUsed, throughCli);
+            return 0;
+        } finally {
+            if (temporary) {
+                BenchmarkData.delete(home);
+            }
+        }
+    }
+    
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weight = part.split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part + ", use op=weight");
+            }
+            mix.put(Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+    
+    private void replay(int ops, Map<Operation, Integer> mix, Map<Operation, Recorder> results) {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < ops; i++) {
+            Operation operation = pick(mix, totalWeight);
+            String habit = habitNames.get(random.nextInt(habitNames.size()));
+            long allocatedBefore = allocatedBytes(threads);
+            long started = System.nanoTime();
+            execute(operation, habit);
+            long nanos = System.nanoTime() - started;
+            long allocated = allocatedBytes(threads) - allocatedBefore;
+            if (results != null) {
+                results.get(operation).record(nanos, allocated);
+            }
+            if (operation == Operation.DELETE) {
+                service.addHabit(habit, "");
+            }
+        }
+    }
+    
+    private Operation pick(Map<Operation, Integer> mix, int totalWeight) {
+        int roll = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+    
+    private void execute(Operation operation, String habit) {
+        // Mostly recent days, the way logging is used
+        LocalDate date = LocalDate.now().minusDays(random.nextInt(7));
+        if (cli != null) {
+            switch (operation) {
+                case LOG:
+                    cli.processCommand(new String[] {"log", habit, date.toString()});
+                    break;
+                case STATUS:
+                    cli.processCommand(new String[] {"status"});
+                    break;
+                case LIST:
+                    cli.processCommand(new String[] {"list"});
+                    break;
+                case DELETE:
+                    cli.processCommand(new String[] {"delete", habit});
+                    break;
+                default:
+                    break;
+            }
+            return;
+        }
+        switch (operation) {
+            case LOG:
+                service.logHabit(habit, date);
+                break;
+            case STATUS:
+                service.statusReport(LocalDate.now());
+                break;
+            case LIST:
+                service.listHabits();
+                break;
+            case DELETE:
+                service.deleteHabit(habit);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+    
+    private static void report(Map<Operation, Recorder> results, int ops, long elapsedNanos, long heapUsed,
+                               boolean throughCli) {
+        System.out.printf("%d operations through %s in %.1f ms: %.0f ops/s, heap used after GC %.1f MB%n",
+                          ops, throughCli ? "the CLI" : "HabitService", elapsedNanos / 1e6,
+                          ops / (elapsedNanos / 1e9), heapUsed / 1048576.0);
+        System.out.println("operation,count,p50_us,p99_us,max_us,ops_per_s,alloc_kb_per_op");
+        for (Map.Entry<Operation, Recorder> entry : results.entrySet()) {
+            Recorder recorder = entry.getValue();
+            if (recorder.count == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%s,%d,%.1f,%.1f,%.1f,%.0f,%.1f%n",
+                              entry.getKey().name().toLowerCase(Locale.ROOT), recorder.count,
+                              recorder.percentile(50) / 1e3, recorder.percentile(99) / 1e3, recorder.percentile(100) / 1e3,
+                              recorder.count / (recorder.totalNanos / 1e9), recorder.allocatedBytes / 1024.0 / recorder.count);
+        }
+    }
+    
+    /**
+     * Latencies and allocation of one operation type
+     */
+    private static final class Recorder {
+        private final long[] nanos;
+        private int count;
+        private long totalNanos;
+        private long allocatedBytes;
+        
+        Recorder(int capacity) {
+            this.nanos = new long[capacity];
+        }
+        
+        void record(long latencyNanos, long allocated) {
+            nanos[count++] = latencyNanos;
+            totalNanos += latencyNanos;
+            allocatedBytes += allocated;
+        }
+        
+        long percentile(int percent) {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+}
\ No newline at end of file
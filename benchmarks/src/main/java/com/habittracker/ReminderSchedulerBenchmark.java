@@ -0,0 +1,92 @@
+package com.habittracker;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of scheduling reminders and of firing them as their deadlines come up.
+ * The scheduler is never started; firing drives advance() directly, so no
+ * time is spent sleeping.
+ *
+ * <p>Run with: java -jar target/benchmarks.jar ReminderScheduler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReminderSchedulerBenchmark {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-03-02T00:00:00Z"), ZoneId.of("Europe/Berlin"));
+    
+    @Param({"10", "1000", "100000"})
+    public int reminders;
+    
+    private List<AlertScheduler.Alert> alerts;
+    private AlertScheduler scheduler;
+    
+    @Setup(Level.Trial)
+    public void createAlerts() {
+        Random random = new Random(42);
+        Set<DayOfWeek> weekdays = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+        alerts = new ArrayList<>(reminders);
+        for (int i = 0; i < reminders; i++) {
+            LocalTime time = LocalTime.ofSecondOfDay(random.nextInt(24 * 60) * 60L);
+            Set<DayOfWeek> days = i % 3 == 0 ? weekdays : EnumSet.allOf(DayOfWeek.class);
+            alerts.add(AlertScheduler.Alert.forHabit("habit-" + i, time, days));
+        }
+    }
+    
+    @Setup(Level.Iteration)
+    public void createScheduler() {
+        scheduler = new AlertScheduler(alerts, due -> { }, false, CLOCK);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void stopScheduler() {
+        scheduler.stop();
+    }
+    
+    /**
+     * Building the queue with the next occurrence of every reminder
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AlertScheduler schedule() {
+        AlertScheduler created = new AlertScheduler(alerts, due -> { }, false, CLOCK);
+        created.stop();
+        return created;
+    }
+    
+    /**
+     * Firing the reminders due at the next deadline and queueing their next
+     * occurrences. Times are whole minutes, so with many reminders one call
+     * fires a batch of about reminders / 1440.
+     */
+    @Benchmark
+    public List<AlertScheduler.Deadline> fireNext() {
+        return scheduler.advance(scheduler.nextDue());
+    }
+}
\ No newline at end of file
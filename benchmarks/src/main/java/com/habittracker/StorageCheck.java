@@ -0,0 +1,196 @@
+package com.habittracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs storage scenarios end to end through HabitService and DataManager,
+ * each in a new temporary home, and reports every scenario that fails.
+ *
+ * <p>Usage: check-storage
+ */
+final class StorageCheck {
+    private static final LocalDate DAY = LocalDate.of(2026, 1, 1);
+    
+    interface Scenario {
+        void run(Path home) throws IOException;
+    }
+    
+    private StorageCheck() {
+    }
+    
+    static int run(String[] args) {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("logs written after a torn journal line survive a reload", StorageCheck::tornJournalLine);
+        scenarios.put("importing the same file twice applies nothing the second time", StorageCheck::reimport);
+        scenarios.put("an import writes at most one snapshot", StorageCheck::importSnapshots);
+        scenarios.put("a rebased add does not take the id of a habit deleted meanwhile", StorageCheck::staleHabitId);
+        scenarios.put("a damaged data file loads the backup, not the records before the damage", StorageCheck::damagedDataFile);
+        
+        int failed = 0;
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            Path home = BenchmarkData.useTemporaryHome();
+            try {
+                scenario.getValue().run(home);
+                System.out.println("✓ " + scenario.getKey());
+            } catch (IllegalStateException | IOException e) {
+                System.err.println("✗ " + scenario.getKey() + ": " + e.getMessage());
+                failed++;
+            } finally {
+                BenchmarkData.delete(home);
+            }
+        }
+        return failed == 0 ? 0 : 1;
+    }
+    
+    private static void tornJournalLine(Path home) throws IOException {
+        HabitService service = new HabitService();
+        service.addHabit("read", null);
+        service.logHabit("read", DAY);
+        service.close();
+        
+        // Cut the last line in half, as a crash mid-append would
+        Path journal = home.resolve(".habit-tracker").resolve("habits.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        
+        service = new HabitService();
+        check(service.listHabits().size() == 1, "the entries before the torn line were not replayed");
+        service.logHabit("read", DAY.plusDays(1));
+        service.close();
+        
+        service = new HabitService();
+        check(service.isHabitLoggedForDate("read", DAY.plusDays(1)), "the log written after the torn line was lost");
+        service.close();
+    }
+    
+    private static void reimport(Path home) throws IOException {
+        HabitService service = new HabitService();
+        service.addHabit("read", null);
+        String file = "habit,date,completed\nread,2026-01-01,true\nread,2026-01-02,false\nwrite,2026-01-01,true\n";
+        HabitLogImporter importer = new HabitLogImporter(service);
+        
+        HabitLogImporter.Result first = importer.importFrom(csv(file), null, System.err);
+        check(first.getImported() == 2 && first.getUnknownHabit() == 1,
+              "first import applied " + first.getImported() + " and skipped " + first.getUnknownHabit() + " as unknown");
+        HabitLogImporter.Result second = importer.importFrom(csv(file), null, System.err);
+        check(second.getImported() == 0 && second.getAlreadyRecorded() == 2 && second.getUnknownHabit() == 1,
+              "second import applied " + second.getImported() + " and skipped " + second.getAlreadyRecorded()
+              + " as already logged");
+        service.close();
+    }
+    
+    private static void importSnapshots(Path home) throws IOException {
+        HabitService service = new HabitService();
+        service.addHabit("read", null);
+        service.addHabit("write", null);
+        HabitLogImporter importer = new HabitLogImporter(service);
+        Metrics.Histogram saves = Metrics.histogram("storage.save.time", Metrics.Unit.NANOS);
+        
+        // Thirty times the default compaction threshold
+        long before = saves.getCount();
+        HabitLogImporter.Result large = importer.importFrom(csv(history(15_000, 0)), null, System.err);
+        long snapshots = saves.getCount() - before;
+        check(large.getImported() == 30_000 && snapshots == 1,
+              "importing 30000 logs wrote " + snapshots + " snapshots, expected 1");
+        
+        before = saves.getCount();
+        HabitLogImporter.Result small = importer.importFrom(csv(history(100, 15_000)), null, System.err);
+        snapshots = saves.getCount() - before;
+        check(small.getImported() == 200 && snapshots == 0,
+              "importing 200 logs wrote " + snapshots + " snapshots, expected them in the journal");
+        service.close();
+        
+        service = new HabitService();
+        check(service.getLogsForHabit("write").size() == 15_100, "the imported logs did not survive a reload");
+        service.close();
+    }
+    
+    private static void staleHabitId(Path home) throws IOException {
+        HabitService first = new HabitService();
+        first.addHabit("read", null);
+        
+        // The second process keeps its add queued, holding the id it picked from what it loaded
+        System.setProperty("habittracker.durability", "on-shutdown");
+        HabitService second;
+        try {
+            second = new HabitService();
+        } finally {
+            System.clearProperty("habittracker.durability");
+        }
+        second.startWriteBehind();
+        second.addHabit("write", null);
+        
+        // Meanwhile the first adds a habit under that same id, logs it and deletes it again
+        first.addHabit("run", null);
+        first.logHabit("run", DAY);
+        first.deleteHabit("run");
+        first.close();
+        second.close();
+        
+        HabitService reloaded = new HabitService();
+        check(reloaded.listHabits().size() == 2, "expected read and write, got " + reloaded.listHabits());
+        check(reloaded.getLogsForHabit("write").isEmpty(), "the new habit took over the deleted habit's logs");
+        reloaded.close();
+    }
+    
+    private static void damagedDataFile(Path home) throws IOException {
+        // A snapshot per change, and a backup of each replaced one
+        System.setProperty("habittracker.storage", "snapshot");
+        System.setProperty("habittracker.backupEvery", "1");
+        HabitService service;
+        try {
+            service = new HabitService();
+        } finally {
+            System.clearProperty("habittracker.storage");
+            System.clearProperty("habittracker.backupEvery");
+        }
+        service.addHabit("read", null);
+        service.addHabit("write", null);
+        service.logHabit("write", DAY);
+        service.close();
+        
+        // Cut the data file off in the middle of the second habit
+        Path data = home.resolve(".habit-tracker").resolve("habits.json");
+        String json = new String(Files.readAllBytes(data), StandardCharsets.UTF_8);
+        Files.write(data, json.substring(0, json.indexOf("\"write\"")).getBytes(StandardCharsets.UTF_8));
+        
+        service = new HabitService();
+        check(service.hasHabit("read") && service.hasHabit("write"),
+              "loaded " + service.listHabits() + " instead of both habits from the backup");
+        service.close();
+    }
+    
+    /**
+     * CSV logs for both habits on the given number of days, starting that
+     * many days after DAY
+     */
+    private static String history(int days, int offset) {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < days; i++) {
+            LocalDate date = DAY.plusDays(offset + i);
+            csv.append("read,").append(date).append('\n').append("write,").append(date).append('\n');
+        }
+        return csv.toString();
+    }
+    
+    private static BufferedReader csv(String lines) {
+        return new BufferedReader(new StringReader(lines));
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.habittracker;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Streak calculation over a whole log history, the path verify-streaks and
+ * cache misses take, against the bitset path the index uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StreakCalculatorBenchmark {
+    @Param({"10", "100", "1000"})
+    public int habits;
+    
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int logs;
+    
+    private String habitName;
+    private List<HabitLog> logList;
+    private CompletionBitset completions;
+    
+    @Setup
+    public void createLogs() {
+        habitName = BenchmarkData.habitName(habits / 2);
+        logList = BenchmarkData.data(habits, logs).getLogs();
+        completions = CompletionBitset.of(habitName, logList);
+    }
+    
+    @Benchmark
+    public int currentStreak() {
+        return StreakCalculator.calculateCurrentStreak(habitName, logList, BenchmarkData.TODAY);
+    }
+    
+    @Benchmark
+    public int longestStreak() {
+        return StreakCalculator.calculateLongestStreak(habitName, logList);
+    }
+    
+    @Benchmark
+    public int currentStreakFromBitset() {
+        return StreakCalculator.calculateCurrentStreak(completions, BenchmarkData.TODAY);
+    }
+    
+    @Benchmark
+    public int longestStreakFromBitset() {
+        return StreakCalculator.calculateLongestStreak(completions);
+    }
+}
\ No newline at end of file
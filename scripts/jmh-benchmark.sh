@@ -0,0 +1,31 @@
+#!/bin/sh
+# Builds the JMH benchmarks against the current tree and runs them, writing
+# the results as JSON. With a baseline results file, compares the two and
+# fails if any benchmark got slower by more than the threshold.
+#
+# Usage: scripts/jmh-benchmark.sh [jmh options...]
+#   OUT        results file (default: target/jmh-results.json)
+#   BASELINE   earlier results file to compare against (optional)
+#   THRESHOLD  allowed slowdown in percent (default: 10)
+#   JAVA       java executable (default: java)
+#
+# The full parameter matrix runs up to 10M logs and takes hours; narrow it
+# with JMH's own options, e.g.
+#   scripts/jmh-benchmark.sh StreakCalculator -p habits=10 -p logs=1000,100000
+
+set -eu
+
+OUT=${OUT:-target/jmh-results.json}
+THRESHOLD=${THRESHOLD:-10}
+JAVA=${JAVA:-java}
+JAR=benchmarks/target/benchmarks.jar
+
+mvn -B -q install -DskipTests
+mvn -B -q -f benchmarks/pom.xml package
+
+mkdir -p "$(dirname "$OUT")"
+"$JAVA" -jar "$JAR" -rf json -rff "$OUT" "$@"
+
+if [ -n "${BASELINE:-}" ]; then
+    "$JAVA" -jar "$JAR" compare "$BASELINE" "$OUT" "$THRESHOLD"
+fi
@@ -0,0 +1,74 @@
+#!/bin/sh
+# Measures cold-start wall time per CLI command: every run is a fresh JVM,
+# the way the CLI is used from a shell. Runs against a throwaway home
+# directory seeded with generated history, never the real ~/.habit-tracker.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [habits] [days]
+#   JAR   path to the shaded jar (default: target/habit-tracker-cli-1.0-SNAPSHOT.jar)
+#   JAVA  java executable (default: java)
+#
+# Prints one CSV line per command: command,runs,min_ms,median_ms,max_ms
+
+set -eu
+
+RUNS=${1:-10}
+HABITS=${2:-20}
+DAYS=${3:-365}
+JAR=${JAR:-target/habit-tracker-cli-1.0-SNAPSHOT.jar}
+JAVA=${JAVA:-java}
+
+if [ ! -f "$JAR" ]; then
+    echo "Jar not found: $JAR (run 'mvn package' first)" >&2
+    exit 1
+fi
+
+BENCH_HOME=$(mktemp -d)
+trap 'rm -rf "$BENCH_HOME"' EXIT INT TERM
+
+cli() {
+    "$JAVA" -Duser.home="$BENCH_HOME" -Dhabittracker.local=true -jar "$JAR" "$@"
+}
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# Seed the data set: log every other day so streaks have real runs to scan
+echo "Seeding $HABITS habits x $DAYS days..." >&2
+i=1
+while [ "$i" -le "$HABITS" ]; do
+    cli add "habit-$i" > /dev/null
+    i=$((i + 1))
+done
+d=0
+while [ "$d" -lt "$DAYS" ]; do
+    date=$(date -d "$DAYS days ago + $d days" +%Y-%m-%d)
+    if [ $((d % 7)) -ne 3 ]; then
+        cli log "habit-1" "$date" > /dev/null
+    fi
+    d=$((d + 1))
+done
+
+measure() {
+    label=$1
+    shift
+    times=""
+    n=0
+    while [ "$n" -lt "$RUNS" ]; do
+        start=$(now_ms)
+        cli "$@" > /dev/null 2>&1 || true
+        end=$(now_ms)
+        times="$times $((end - start))"
+        n=$((n + 1))
+    done
+    echo "$times" | tr ' ' '\n' | grep -v '^$' | sort -n | awk -v label="$label" -v runs="$RUNS" '
+        { t[NR] = $1 }
+        END { printf "%s,%d,%d,%d,%d\n", label, runs, t[1], t[int((NR + 1) / 2)], t[NR] }'
+}
+
+echo "command,runs,min_ms,median_ms,max_ms"
+measure help help
+measure daemon-status daemon-status
+measure list list
+measure status status
+measure log log habit-2
@@ -0,0 +1,244 @@
+package com.habittracker;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fires a callback at each of a set of local times, daily or on chosen
+ * weekdays: the global alert times plus every habit's reminders. The next
+ * occurrence of every alert is kept as an absolute instant in a priority
+ * queue, and the single scheduler thread sleeps until the earliest one, so
+ * there are no wakeups in between and no minute-matching that can miss or
+ * repeat an alert. Firing and rescheduling an alert costs O(log n), with no
+ * thread or timer per alert; alerts due together are delivered in one call.
+ *
+ * <p>Occurrences are computed per day through ZonedDateTime, so DST shifts
+ * are part of the instant: a time skipped by spring forward fires at the
+ * shifted local time, and a time repeated by fall back fires once. The
+ * executor measures delays on the monotonic clock, which does not follow
+ * wall-clock changes or time spent suspended, so sleeps are capped and the
+ * delay is recomputed from the wall clock on every wakeup.
+ */
+class AlertScheduler {
+    private static final long MAX_SLEEP_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Alerts missed by more than this (e.g. while suspended) are skipped, not fired late
+    private static final Duration MISSED_GRACE = Duration.ofMinutes(30);
+    
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+    private final ZoneId zone;
+    private final Consumer<List<Alert>> onAlert;
+    // Guarded by this
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>();
+    
+    /**
+     * One alert time, for a habit's reminder or for the global alert
+     */
+    static final class Alert {
+        private final String habitName;
+        private final LocalTime time;
+        private final Set<DayOfWeek> days;
+        
+        private Alert(String habitName, LocalTime time, Set<DayOfWeek> days) {
+            this.habitName = habitName;
+            this.time = time;
+            this.days = days;
+        }
+        
+        static Alert daily(LocalTime time) {
+            return new Alert(null, time, EnumSet.allOf(DayOfWeek.class));
+        }
+        
+        static Alert forHabit(String habitName, LocalTime time, Set<DayOfWeek> days) {
+            return new Alert(habitName, time, days);
+        }
+        
+        /**
+         * The habit this reminds of, or null for the global alert
+         */
+        String getHabitName() {
+            return habitName;
+        }
+        
+        LocalTime getTime() {
+            return time;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Alert other = (Alert) o;
+            return Objects.equals(habitName, other.habitName) && time.equals(other.time) && days.equals(other.days);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(habitName, time, days);
+        }
+        
+        @Override
+        public String toString() {
+            return (habitName != null ? habitName + " at " : "") + time;
+        }
+    }
+    
+    static final class Deadline implements Comparable<Deadline> {
+        private final Alert alert;
+        private Instant due;
+        
+        private Deadline(Alert alert, Instant due) {
+            this.alert = alert;
+            this.due = due;
+        }
+        
+        Alert getAlert() {
+            return alert;
+        }
+        
+        Instant getDue() {
+            return due;
+        }
+        
+        @Override
+        public int compareTo(Deadline other) {
+            return due.compareTo(other.due);
+        }
+    }
+    
+    /**
+     * @param keepAlive whether the scheduler thread keeps the JVM running
+     */
+    AlertScheduler(Collection<Alert> alerts, Consumer<List<Alert>> onAlert, boolean keepAlive, Clock clock) {
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.onAlert = onAlert;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "habit-alerts");
+            thread.setDaemon(!keepAlive);
+            return thread;
+        });
+        
+        Instant now = clock.instant();
+        for (Alert alert : new LinkedHashSet<>(alerts)) {
+            if (!alert.days.isEmpty()) {
+                deadlines.add(new Deadline(alert, nextOccurrence(alert, now)));
+            }
+        }
+    }
+    
+    synchronized void start() {
+        arm(clock.instant());
+    }
+    
+    void stop() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * When the next alert is due, or null if there are no alert times
+     */
+    synchronized Instant nextDue() {
+        return deadlines.isEmpty() ? null : deadlines.peek().due;
+    }
+    
+    /**
+     * Number of scheduled alerts
+     */
+    synchronized int size() {
+        return deadlines.size();
+    }
+    
+    private void wake() {
+        Instant now = clock.instant();
+        List<Alert> due = new ArrayList<>();
+        synchronized (this) {
+            for (Deadline deadline : advance(now)) {
+                if (Duration.between(deadline.due, now).compareTo(MISSED_GRACE) <= 0) {
+                    due.add(deadline.alert);
+                } else {
+                    System.err.println("Skipped alert for " + deadline.alert + ", missed by "
+                                       + Duration.between(deadline.due, now).toMinutes() + " minutes");
+                }
+            }
+            arm(now);
+        }
+        if (!due.isEmpty()) {
+            try {
+                onAlert.accept(due);
+            } catch (RuntimeException e) {
+                System.err.println("Alert for " + due + " failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Take every alert due by the given instant off the queue and queue its
+     * next occurrence
+     *
+     * @return the due alerts, each still holding the instant it was due at
+     */
+    synchronized List<Deadline> advance(Instant now) {
+        List<Deadline> due = new ArrayList<>();
+        while (!deadlines.isEmpty() && !deadlines.peek().due.isAfter(now)) {
+            Deadline deadline = deadlines.poll();
+            due.add(new Deadline(deadline.alert, deadline.due));
+            deadline.due = nextOccurrence(deadline.alert, now);
+            deadlines.add(deadline);
+        }
+        return due;
+    }
+    
+    private void arm(Instant now) {
+        if (deadlines.isEmpty() || executor.isShutdown()) {
+            return;
+        }
+        long delay = Math.max(0, Duration.between(now, deadlines.peek().due).toMillis());
+        try {
+            executor.schedule(this::wake, Math.min(delay, MAX_SLEEP_MILLIS), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped concurrently
+        }
+    }
+    
+    /**
+     * The first instant after the given one at which the local time is the
+     * alert time on one of its days, or the time it shifts to when a DST gap
+     * skips it
+     */
+    private Instant nextOccurrence(Alert alert, Instant after) {
+        LocalDate date = after.atZone(zone).toLocalDate();
+        while (true) {
+            if (alert.days.contains(date.getDayOfWeek())) {
+                Instant candidate = ZonedDateTime.of(date, alert.time, zone).toInstant();
+                if (candidate.isAfter(after)) {
+                    return candidate;
+                }
+            }
+            date = date.plusDays(1);
+        }
+    }
+}
\ No newline at end of file
@@ -3,24 +3,51 @@ package com.habittracker;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
 
 public class AlertSettings {
-    private final LocalTime alertTime;
+    private final List<LocalTime> alertTimes;
     private final boolean enabled;
     
+    /**
+     * Files from before multiple alert times only have alertTime
+     */
     @JsonCreator
     public AlertSettings(@JsonProperty("alertTime") LocalTime alertTime,
+                        @JsonProperty("alertTimes") List<LocalTime> alertTimes,
                         @JsonProperty("enabled") boolean enabled) {
-        this.alertTime = alertTime;
+        this(alertTimes != null && !alertTimes.isEmpty() ? alertTimes : Collections.singletonList(alertTime), enabled);
+    }
+    
+    public AlertSettings(Collection<LocalTime> alertTimes, boolean enabled) {
+        this.alertTimes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(alertTimes)));
         this.enabled = enabled;
     }
     
+    public AlertSettings(LocalTime alertTime, boolean enabled) {
+        this(Collections.singletonList(alertTime), enabled);
+    }
+    
     public AlertSettings(LocalTime alertTime) {
         this(alertTime, true);
     }
     
+    /**
+     * The earliest alert time
+     */
     public LocalTime getAlertTime() {
-        return alertTime;
+        return alertTimes.get(0);
+    }
+    
+    /**
+     * Every daily alert time, earliest first
+     */
+    public List<LocalTime> getAlertTimes() {
+        return alertTimes;
     }
     
     public boolean isEnabled() {
@@ -28,12 +55,12 @@ public class AlertSettings {
     }
     
     public AlertSettings withEnabled(boolean enabled) {
-        return new AlertSettings(this.alertTime, enabled);
+        return new AlertSettings(this.alertTimes, enabled);
     }
     
     @Override
     public String toString() {
-        return String.format("AlertSettings{time=%s, enabled=%s}", 
-                           alertTime, enabled);
+        return String.format("AlertSettings{times=%s, enabled=%s}", 
+                           alertTimes, enabled);
     }
 }
\ No newline at end of file
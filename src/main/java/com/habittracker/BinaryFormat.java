@@ -0,0 +1,358 @@
+package com.habittracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary alternative to habits.json.
+ *
+ * <pre>
+ * header    "HTRK" magic, u8 version, varint generation (version 2 and up),
+ *           (version 5 and up) varint next habit id
+ * alert     u8 present, [i32 second of day, u8 enabled, (version 3 and up)
+ *           varint count of further times, i32 second of day each]
+ * habits    varint count, then (version 5 and up) varint id, name, zigzag
+ *           created epoch day, description,
+ *           (version 4 and up) u8 has reminder, [varint time count,
+ *           i32 second of day each, u8 weekday mask with Monday in bit 0]
+ * logs      varint habit count, then per habit: varint habit id (name before
+ *           version 5), varint log count and the logs sorted by day as
+ *           varint (delta &lt;&lt; 1 | completed); the first delta is zigzag
+ *           encoded from day 0
+ * streaks   varint count, then name, u8 has end, [zigzag end day],
+ *           varint current length, varint longest run
+ * trailer   i32 CRC32 of everything before it
+ * </pre>
+ *
+ * Strings are a varint byte length followed by UTF-8. Files are read through
+ * a read-only memory mapping and decoded straight into a LogTable. Habits in
+ * files before version 5 get ids in file order, as in HabitDataReader.
+ */
+public class BinaryFormat {
+    private static final byte[] MAGIC = {'H', 'T', 'R', 'K'};
+    private static final int VERSION = 5;
+    
+    /**
+     * Whether the file starts with the binary format's magic bytes
+     */
+    public static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is full or the file ends
+            }
+            return !header.hasRemaining() && Arrays.equals(header.array(), MAGIC);
+        }
+    }
+    
+    public static HabitDataReader.Result read(Path path) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + 1 + 4) {
+                throw new IOException("Binary data file is truncated: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            verifyChecksum(buffer, path);
+            
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            int version = buffer.get() & 0xFF;
+            if (!Arrays.equals(magic, MAGIC) || version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary data file version " + version + ": " + path);
+            }
+            long generation = version >= 2 ? readVarLong(buffer) : 0;
+            HabitDataReader.HabitIds ids = new HabitDataReader.HabitIds();
+            if (version >= 5) {
+                ids.reserve(readVarint(buffer));
+            }
+            
+            AlertSettings alertSettings = null;
+            if (buffer.get() != 0) {
+                List<LocalTime> times = new ArrayList<>();
+                times.add(LocalTime.ofSecondOfDay(buffer.getInt()));
+                boolean enabled = buffer.get() != 0;
+                int further = version >= 3 ? readVarint(buffer) : 0;
+                for (int i = 0; i < further; i++) {
+                    times.add(LocalTime.ofSecondOfDay(buffer.getInt()));
+                }
+                alertSettings = new AlertSettings(times, enabled);
+            }
+            
+            int habitCount = readVarint(buffer);
+            List<Habit> habits = new ArrayList<>(habitCount);
+            for (int i = 0; i < habitCount; i++) {
+                int id = version >= 5 ? readVarint(buffer) : 0;
+                String name = readString(buffer);
+                LocalDate created = LocalDate.ofEpochDay(readZigzag(buffer));
+                String description = readString(buffer);
+                Reminder reminder = null;
+                if (version >= 4 && buffer.get() != 0) {
+                    int count = readVarint(buffer);
+                    List<LocalTime> times = new ArrayList<>(count);
+                    for (int j = 0; j < count; j++) {
+                        times.add(LocalTime.ofSecondOfDay(buffer.getInt()));
+                    }
+                    reminder = new Reminder(times, Reminder.daysOf(buffer.get()));
+                }
+                habits.add(ids.assign(new Habit(id, name, created, description, reminder)));
+            }
+            
+            LogTable.Builder logs = LogTable.builder();
+            int groups = readVarint(buffer);
+            for (int i = 0; i < groups; i++) {
+                int habitId = version >= 5 ? readVarint(buffer) : ids.idOf(readString(buffer));
+                ids.referenced(habitId);
+                int count = readVarint(buffer);
+                long day = 0;
+                for (int j = 0; j < count; j++) {
+                    long value = readVarLong(buffer);
+                    long delta = value >>> 1;
+                    day = j == 0 ? zigzagDecode(delta) : day + delta;
+                    logs.add(habitId, LocalDate.ofEpochDay(day), (value & 1) != 0);
+                }
+            }
+            
+            int streakCount = readVarint(buffer);
+            Map<String, StreakSummary> streaks = new HashMap<>();
+            for (int i = 0; i < streakCount; i++) {
+                String name = readString(buffer);
+                LocalDate end = buffer.get() != 0 ? LocalDate.ofEpochDay(readZigzag(buffer)) : null;
+                streaks.put(name, new StreakSummary(end, readVarint(buffer), readVarint(buffer)));
+            }
+            
+            HabitData data = new HabitData(habits, ids.live(habits, logs.build()), alertSettings, streaks, ids.next());
+            return new HabitDataReader.Result(data, generation, habitCount + logs.size(), size, System.nanoTime() - start, null,
+                                              ids.isLegacy());
+        } catch (RuntimeException e) {
+            // Buffer underflows and bad dates from a file whose checksum happened to match
+            throw new IOException("Corrupt binary data file " + path + ": " + e, e);
+        }
+    }
+    
+    public static void write(HabitData data, long generation, Path path) throws IOException {
+        Output out = new Output();
+        out.bytes(MAGIC);
+        out.u8(VERSION);
+        out.varint(generation);
+        out.varint(data.getNextHabitId());
+        
+        AlertSettings alert = data.getAlertSettings();
+        out.u8(alert != null ? 1 : 0);
+        if (alert != null) {
+            List<LocalTime> times = alert.getAlertTimes();
+            out.i32(times.get(0).toSecondOfDay());
+            out.u8(alert.isEnabled() ? 1 : 0);
+            out.varint(times.size() - 1);
+            for (LocalTime time : times.subList(1, times.size())) {
+                out.i32(time.toSecondOfDay());
+            }
+        }
+        
+        out.varint(data.getHabits().size());
+        for (Habit habit : data.getHabits()) {
+            out.varint(habit.getId());
+            out.string(habit.getName());
+            out.zigzag(habit.getCreatedDate().toEpochDay());
+            out.string(habit.getDescription() != null ? habit.getDescription() : "");
+            Reminder reminder = habit.getReminder();
+            out.u8(reminder != null ? 1 : 0);
+            if (reminder != null) {
+                out.varint(reminder.getTimes().size());
+                for (LocalTime time : reminder.getTimes()) {
+                    out.i32(time.toSecondOfDay());
+                }
+                out.u8(reminder.dayMask());
+            }
+        }
+        
+        // Group by habit. Each key sorts by day, then by position in the table,
+        // so when a day appears twice the later log wins.
+        Map<Integer, LongList> byHabit = new LinkedHashMap<>();
+        int[] position = {0};
+        data.forEachLog((habitId, epochDay, completed) -> {
+            long key = epochDay << 32 | ((long) position[0]++ << 1 & 0xFFFFFFFFL) | (completed ? 1 : 0);
+            byHabit.computeIfAbsent(habitId, id -> new LongList()).add(key);
+        });
+        
+        out.varint(byHabit.size());
+        for (Map.Entry<Integer, LongList> group : byHabit.entrySet()) {
+            long[] keys = group.getValue().sorted();
+            int unique = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i + 1 < keys.length && keys[i + 1] >> 32 == keys[i] >> 32) {
+                    continue;
+                }
+                keys[unique++] = keys[i];
+            }
+            
+            out.varint(group.getKey());
+            out.varint(unique);
+            long previous = 0;
+            for (int i = 0; i < unique; i++) {
+                long day = keys[i] >> 32;
+                long delta = i == 0 ? zigzagEncode(day) : day - previous;
+                out.varint(delta << 1 | (keys[i] & 1));
+                previous = day;
+            }
+        }
+        
+        out.varint(data.getStreaks().size());
+        for (Map.Entry<String, StreakSummary> entry : data.getStreaks().entrySet()) {
+            StreakSummary streak = entry.getValue();
+            out.string(entry.getKey());
+            out.u8(streak.getCurrentRunEnd() != null ? 1 : 0);
+            if (streak.getCurrentRunEnd() != null) {
+                out.zigzag(streak.getCurrentRunEnd().toEpochDay());
+            }
+            out.varint(streak.getCurrentLength());
+            out.varint(streak.getLongestRun());
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer, 0, out.size);
+        out.i32((int) crc.getValue());
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.buffer, 0, out.size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+    
+    private static void verifyChecksum(MappedByteBuffer buffer, Path path) throws IOException {
+        int bodyLength = buffer.limit() - 4;
+        ByteBuffer body = buffer.duplicate();
+        body.limit(bodyLength);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+            throw new IOException("Checksum mismatch in binary data file " + path);
+        }
+        buffer.limit(bodyLength);
+    }
+    
+    private static int readVarint(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+    
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+    
+    private static long readZigzag(ByteBuffer buffer) {
+        return zigzagDecode(readVarLong(buffer));
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static class LongList {
+        private long[] values = new long[16];
+        private int size;
+        
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+    
+    /**
+     * Growable byte buffer for building a file in memory
+     */
+    private static class Output {
+        private byte[] buffer = new byte[4096];
+        private int size;
+        
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+        
+        void u8(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+        
+        void i32(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+        
+        void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+        
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+        
+        void zigzag(long value) {
+            varint(zigzagEncode(value));
+        }
+        
+        void string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            bytes(bytes);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.habittracker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * What the data files looked like at some point, from their metadata alone:
+ * file identity, size and modification time. Snapshots are replaced by rename,
+ * so every save gives the data file a new identity, and journal appends grow
+ * its size. Comparing two stamps tells whether another process wrote anything
+ * without reading a byte of the files.
+ */
+class ChangeStamp {
+    private final Object[] parts;
+    
+    private ChangeStamp(Object[] parts) {
+        this.parts = parts;
+    }
+    
+    static ChangeStamp of(Path... files) {
+        Object[] parts = new Object[files.length * 3];
+        for (int i = 0; i < files.length; i++) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(files[i], BasicFileAttributes.class);
+                // fileKey is null on platforms without inodes; size and time still change
+                parts[i * 3] = attributes.fileKey();
+                parts[i * 3 + 1] = attributes.size();
+                parts[i * 3 + 2] = attributes.lastModifiedTime();
+            } catch (NoSuchFileException e) {
+                // Missing files are part of the state too
+            } catch (IOException e) {
+                parts[i * 3] = e.toString();
+            }
+        }
+        return new ChangeStamp(parts);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(parts, ((ChangeStamp) o).parts);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(parts);
+    }
+    
+    @Override
+    public String toString() {
+        return "ChangeStamp" + Arrays.toString(parts);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.habittracker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Sends a command to a running daemon's CommandServer
+ */
+public class CommandClient {
+    private static final int CONNECT_TIMEOUT_MS = 250;
+    private static final int RESPONSE_TIMEOUT_MS = 30000;
+    
+    /**
+     * Run the command in the daemon and copy its output to the given streams.
+     *
+     * @return the command's exit code, or empty if no daemon is accepting
+     *         commands and the caller should run it locally
+     */
+    public static OptionalInt forward(String[] args, PrintStream out, PrintStream err) {
+        Path portFile = Paths.get(NotificationDaemon.PORT_FILE);
+        int port;
+        String token;
+        try {
+            List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+            if (lines.size() < 2) {
+                return OptionalInt.empty();
+            }
+            port = Integer.parseInt(lines.get(0).trim());
+            token = lines.get(1).trim();
+        } catch (IOException | NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+        
+        try (Socket socket = new Socket()) {
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                // Stale port file from a daemon that is gone
+                return OptionalInt.empty();
+            }
+            socket.setSoTimeout(RESPONSE_TIMEOUT_MS);
+            
+            DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+            request.writeUTF(token);
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            
+            DataInputStream response = new DataInputStream(socket.getInputStream());
+            int exitCode = response.readInt();
+            out.print(new String(CommandServer.readBytes(response), StandardCharsets.UTF_8));
+            err.print(new String(CommandServer.readBytes(response), StandardCharsets.UTF_8));
+            out.flush();
+            err.flush();
+            return OptionalInt.of(exitCode);
+        } catch (IOException e) {
+            // The command may already have run, so retrying locally could apply it twice
+            err.println("Error: lost connection to daemon: " + e.getMessage());
+            return OptionalInt.of(1);
+        }
+    }
+}
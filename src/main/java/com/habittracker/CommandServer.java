@@ -0,0 +1,182 @@
+package com.habittracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Serves CLI commands from inside the daemon over a loopback socket, so the
+ * CLI does not have to start a full service and parse the data file itself.
+ *
+ * <p>The port and a random token are published in a port file readable only
+ * by the user. The protocol is one request per connection:
+ * <pre>
+ * request   UTF token, int argc, argc x UTF argument
+ * response  int exit code, bytes stdout, bytes stderr (int length + UTF-8)
+ * </pre>
+ * Commands run one at a time on the server thread.
+ */
+public class CommandServer {
+    private static final int REQUEST_TIMEOUT_MS = 5000;
+    
+    /**
+     * Runs one command and reports its exit code
+     */
+    public interface CommandHandler {
+        int execute(String[] args, PrintStream out, PrintStream err);
+    }
+    
+    private final ServerSocket serverSocket;
+    private final Path portFile;
+    private final String token;
+    private final CommandHandler handler;
+    private final Thread thread;
+    
+    private CommandServer(ServerSocket serverSocket, Path portFile, String token, CommandHandler handler) {
+        this.serverSocket = serverSocket;
+        this.portFile = portFile;
+        this.token = token;
+        this.handler = handler;
+        this.thread = new Thread(this::acceptLoop, "habit-command-server");
+        this.thread.setDaemon(true);
+    }
+    
+    /**
+     * Bind an ephemeral loopback port, publish it in the port file and start serving
+     */
+    public static CommandServer start(Path portFile, CommandHandler handler) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        String token = newToken();
+        CommandServer server = new CommandServer(serverSocket, portFile, token, handler);
+        server.publish();
+        server.thread.start();
+        return server;
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Stop accepting commands, and wait for the one being served to finish
+     * so its response still reaches the client
+     */
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        try {
+            Files.deleteIfExists(portFile);
+        } catch (IOException e) {
+            // Ignore cleanup errors
+        }
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(REQUEST_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void publish() throws IOException {
+        Path temp = portFile.resolveSibling(portFile.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Files.write(temp, (getPort() + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+                serve(socket);
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                System.err.println("Command connection failed: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Command connection failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        DataOutputStream response = new DataOutputStream(socket.getOutputStream());
+        
+        String requestToken = in.readUTF();
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                                   requestToken.getBytes(StandardCharsets.UTF_8))) {
+            System.err.println("Rejected command with an invalid token");
+            return;
+        }
+        
+        int argc = in.readInt();
+        if (argc < 1 || argc > 1024) {
+            throw new IOException("Invalid argument count: " + argc);
+        }
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; i++) {
+            args[i] = in.readUTF();
+        }
+        
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        int exitCode;
+        try (PrintStream out = new PrintStream(outBytes, true, "UTF-8");
+             PrintStream err = new PrintStream(errBytes, true, "UTF-8")) {
+            exitCode = handler.execute(args, out, err);
+        }
+        
+        response.writeInt(exitCode);
+        writeBytes(response, outBytes.toByteArray());
+        writeBytes(response, errBytes.toByteArray());
+        response.flush();
+    }
+    
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid response length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.habittracker;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The days a habit was completed, one bit per epoch day. Streaks are runs of
+ * set bits, so they are found a 64-day word at a time instead of date by date.
+ * The queries allocate nothing; the bitset only grows when a day outside its
+ * current range is set.
+ */
+public class CompletionBitset {
+    private static final int WORD_BITS = 64;
+    
+    private long[] words = new long[0];
+    // Epoch day of bit 0, always a multiple of 64
+    private long baseDay;
+    
+    public static CompletionBitset of(String habitName, List<HabitLog> logs) {
+        CompletionBitset bits = new CompletionBitset();
+        for (HabitLog log : logs) {
+            if (log.getHabitName().equals(habitName) && log.isCompleted()) {
+                bits.set(log.getDate());
+            }
+        }
+        return bits;
+    }
+    
+    public void set(LocalDate date) {
+        setDay(date.toEpochDay());
+    }
+    
+    public void setDay(long day) {
+        ensureCovers(day);
+        int bit = (int) (day - baseDay);
+        words[bit >>> 6] |= 1L << bit;
+    }
+    
+    public void clear(LocalDate date) {
+        clearDay(date.toEpochDay());
+    }
+    
+    public void clearDay(long day) {
+        if (covers(day)) {
+            int bit = (int) (day - baseDay);
+            words[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+    
+    public boolean get(LocalDate date) {
+        long day = date.toEpochDay();
+        if (!covers(day)) {
+            return false;
+        }
+        int bit = (int) (day - baseDay);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Visit every set day in ascending order
+     */
+    public void forEach(Consumer<LocalDate> action) {
+        for (int word = 0; word < words.length; word++) {
+            long remaining = words[word];
+            while (remaining != 0) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                action.accept(LocalDate.ofEpochDay(baseDay + (long) word * WORD_BITS + bit));
+                remaining &= remaining - 1;
+            }
+        }
+    }
+    
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The latest completed day, or null if there is none
+     */
+    public LocalDate lastSet() {
+        for (int word = words.length - 1; word >= 0; word--) {
+            if (words[word] != 0) {
+                int bit = word * WORD_BITS + (63 - Long.numberOfLeadingZeros(words[word]));
+                return LocalDate.ofEpochDay(baseDay + bit);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Length of the run of completed days ending on (and including) the given date
+     */
+    public int runEndingAt(LocalDate date) {
+        long day = date.toEpochDay();
+        if (!covers(day)) {
+            return 0;
+        }
+        int bit = (int) (day - baseDay);
+        int word = bit >>> 6;
+        int offset = bit & 63;
+        
+        // Move the bit for 'date' to the top; leading ones are the run within this word
+        long shifted = words[word] << (63 - offset);
+        int run = Long.numberOfLeadingZeros(~shifted);
+        if (run <= offset) {
+            return run;
+        }
+        
+        while (--word >= 0 && words[word] == -1L) {
+            run += WORD_BITS;
+        }
+        if (word >= 0) {
+            run += Long.numberOfLeadingZeros(~words[word]);
+        }
+        return run;
+    }
+    
+    /**
+     * Length of the run of completed days starting on (and including) the given date
+     */
+    public int runStartingAt(LocalDate date) {
+        long day = date.toEpochDay();
+        if (!covers(day)) {
+            return 0;
+        }
+        int bit = (int) (day - baseDay);
+        int word = bit >>> 6;
+        int offset = bit & 63;
+        
+        long shifted = words[word] >>> offset;
+        int run = Long.numberOfTrailingZeros(~shifted);
+        if (run < WORD_BITS - offset) {
+            return run;
+        }
+        // The shift brought in zeros, so the run hit the top of the word
+        run = WORD_BITS - offset;
+        
+        while (++word < words.length && words[word] == -1L) {
+            run += WORD_BITS;
+        }
+        if (word < words.length) {
+            run += Long.numberOfTrailingZeros(~words[word]);
+        }
+        return run;
+    }
+    
+    /**
+     * Length of the longest run of completed days
+     */
+    public int longestRun() {
+        int longest = 0;
+        // Run of ones that reached the top of the previous word
+        int carried = 0;
+        
+        for (long word : words) {
+            if (word == -1L) {
+                carried += WORD_BITS;
+                continue;
+            }
+            if (word == 0) {
+                longest = Math.max(longest, carried);
+                carried = 0;
+                continue;
+            }
+            
+            // The low ones of this word extend the carried run
+            int low = Long.numberOfTrailingZeros(~word);
+            longest = Math.max(longest, carried + low);
+            
+            // Scan the remaining runs inside the word
+            int position = low;
+            long rest = word >>> low;
+            carried = 0;
+            while (rest != 0) {
+                int zeros = Long.numberOfTrailingZeros(rest);
+                rest >>>= zeros;
+                position += zeros;
+                int ones = Long.numberOfTrailingZeros(~rest);
+                if (position + ones >= WORD_BITS) {
+                    // Reaches the top bit, so it may continue into the next word
+                    carried = WORD_BITS - position;
+                    break;
+                }
+                longest = Math.max(longest, ones);
+                rest >>>= ones;
+                position += ones;
+            }
+        }
+        return Math.max(longest, carried);
+    }
+    
+    private boolean covers(long day) {
+        return day >= baseDay && day < baseDay + (long) words.length * WORD_BITS;
+    }
+    
+    private void ensureCovers(long day) {
+        if (words.length == 0) {
+            baseDay = Math.floorDiv(day, WORD_BITS) * WORD_BITS;
+            words = new long[1];
+            return;
+        }
+        if (day < baseDay) {
+            long newBase = Math.floorDiv(day, WORD_BITS) * WORD_BITS;
+            int shift = (int) ((baseDay - newBase) / WORD_BITS);
+            long[] grown = new long[words.length + shift];
+            System.arraycopy(words, 0, grown, shift, words.length);
+            words = grown;
+            baseDay = newBase;
+        } else if (!covers(day)) {
+            int needed = (int) ((day - baseDay) / WORD_BITS) + 1;
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,196 @@
+package com.habittracker;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tells whether the daemon is running without starting any process. The
+ * daemon holds an exclusive lock on the lock file for as long as it lives
+ * and the operating system drops it when the process dies, so a lock that
+ * cannot be taken means a live daemon, whatever the PID file says. The PID
+ * file is only written once the daemon is ready to serve, which makes it the
+ * readiness signal a starting CLI waits for.
+ */
+class DaemonLifecycle {
+    private static final long POLL_MILLIS = 20;
+    
+    private final Path lockFile;
+    private final Path pidFile;
+    // Held by the daemon process itself, for its lifetime
+    private FileChannel lockChannel;
+    private FileLock lock;
+    
+    DaemonLifecycle(Path lockFile, Path pidFile) {
+        this.lockFile = lockFile;
+        this.pidFile = pidFile;
+    }
+    
+    /**
+     * Take the daemon lock for this process
+     *
+     * @return false if another daemon holds it
+     */
+    synchronized boolean acquire() throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired = channel.tryLock();
+        if (acquired == null) {
+            channel.close();
+            return false;
+        }
+        lockChannel = channel;
+        lock = acquired;
+        return true;
+    }
+    
+    /**
+     * Signal readiness by publishing this process's PID
+     */
+    void markReady() throws IOException {
+        Path temp = pidFile.resolveSibling(pidFile.getFileName() + ".tmp");
+        Files.write(temp, (currentPid() + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, pidFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Remove the PID file and let go of the lock, as the daemon exits
+     */
+    synchronized void release() {
+        try {
+            Files.deleteIfExists(pidFile);
+        } catch (IOException e) {
+            // Ignore cleanup errors
+        }
+        if (lockChannel != null) {
+            try {
+                // Closing the channel releases the lock
+                lockChannel.close();
+            } catch (IOException e) {
+                // Ignore close errors
+            }
+            lockChannel = null;
+            lock = null;
+        }
+    }
+    
+    /**
+     * Whether a daemon process holds the lock
+     */
+    synchronized boolean isRunning() {
+        if (lock != null) {
+            // Probing from the daemon itself: closing a second channel on the
+            // file would drop this process's lock
+            return lock.isValid();
+        }
+        if (!Files.exists(lockFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock probe = channel.tryLock();
+            if (probe == null) {
+                return true;
+            }
+            probe.release();
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * The running daemon's PID, or empty if it is not running or not yet ready
+     */
+    Optional<Long> runningPid() {
+        Optional<Long> pid = readPid();
+        return pid.isPresent() && isRunning() ? pid : Optional.empty();
+    }
+    
+    Optional<Long> readPid() {
+        try {
+            return Optional.of(Long.parseLong(new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim()));
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Remove a PID file left behind by a daemon that did not exit cleanly
+     */
+    void clearStalePid() throws IOException {
+        if (!isRunning()) {
+            Files.deleteIfExists(pidFile);
+        }
+    }
+    
+    /**
+     * Wait for a daemon just started as the given process to be ready
+     *
+     * @return its PID, or empty if it exited or did not get ready in time
+     */
+    Optional<Long> awaitReady(Process process, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (System.nanoTime() - deadline < 0) {
+            Optional<Long> pid = runningPid();
+            if (pid.isPresent()) {
+                return pid;
+            }
+            if (!process.isAlive()) {
+                return Optional.empty();
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Wait for the running daemon to let go of the lock
+     *
+     * @return whether it stopped in time
+     */
+    boolean awaitStopped(long timeoutMillis) throws InterruptedException {
+        return await(() -> !isRunning(), timeoutMillis);
+    }
+    
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return true;
+    }
+    
+    /**
+     * This process's PID, from /proc where there is one and from the runtime
+     * name ("pid@host" on HotSpot) elsewhere, since ProcessHandle needs Java 9
+     */
+    static long currentPid() {
+        try {
+            return Long.parseLong(Files.readSymbolicLink(Paths.get("/proc/self")).toString());
+        } catch (IOException | UnsupportedOperationException | NumberFormatException e) {
+            String name = ManagementFactory.getRuntimeMXBean().getName();
+            int at = name.indexOf('@');
+            try {
+                return Long.parseLong(at > 0 ? name.substring(0, at) : name);
+            } catch (NumberFormatException unknown) {
+                return -1;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,27 +1,117 @@
 package com.habittracker;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class DataManager {
-    private static final String DATA_FILE = "habits.json";
-    private static final String BACKUP_FILE = "habits_backup.json";
+    /**
+     * On-disk snapshot formats. The journal is JSON lines in either case.
+     */
+    public enum Format {
+        JSON("habits.json", "habits_backup.json"),
+        BINARY("habits.bin", "habits_backup.bin");
+        
+        private final String dataFile;
+        private final String backupFile;
+        
+        Format(String dataFile, String backupFile) {
+            this.dataFile = dataFile;
+            this.backupFile = backupFile;
+        }
+    }
+    
+    /**
+     * When a long-lived process with write-behind started persists its
+     * mutations. Every write that does reach the disk is fsynced.
+     */
+    public enum Durability {
+        /** Persist on the caller's thread before the mutation returns */
+        EVERY_WRITE,
+        /** Coalesce mutations for a short window and persist them together in the background */
+        INTERVAL,
+        /** Keep mutations in memory until the process shuts down */
+        ON_SHUTDOWN
+    }
+    
+    private static final String JOURNAL_FILE = "habits.journal";
+    private static final String LOCK_FILE = "habits.lock";
+    private static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    private static final int DEFAULT_BACKUP_EVERY = 10;
+    private static final long DEFAULT_BACKUP_MAX_AGE_HOURS = 24;
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("storage.load.time", Metrics.Unit.NANOS);
+    private static final Metrics.Histogram LOAD_BYTES = Metrics.histogram("storage.load.bytes", Metrics.Unit.BYTES);
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("storage.save.time", Metrics.Unit.NANOS);
+    private static final Metrics.Histogram SAVE_BYTES = Metrics.histogram("storage.save.bytes", Metrics.Unit.BYTES);
+    private static final Metrics.Histogram APPEND_TIME = Metrics.histogram("storage.journal.append.time", Metrics.Unit.NANOS);
+    private static final Metrics.Histogram APPEND_BYTES = Metrics.histogram("storage.journal.append.bytes", Metrics.Unit.BYTES);
     private final ObjectMapper objectMapper;
-    private final Path dataPath;
-    private final Path backupPath;
+    private final Path appDir;
+    private final Path journalPath;
+    private final Path lockPath;
+    private Format format = Format.JSON;
+    private final boolean journalEnabled;
+    private final int compactThreshold;
+    private int journalEntries;
+    private boolean journalStarted;
+    private HabitDataReader.Result lastLoad;
+    // Snapshots saved so far; each save writes the next one
+    private long generation;
+    private final int backupEvery;
+    private final long backupMaxAgeMillis;
+    
+    private final Durability durability;
+    private final long flushIntervalMillis;
+    // Held for the whole of each disk write, so flushes land in order
+    private final Object writeLock = new Object();
+    // Guarded by writeLock
+    private boolean fileLocked;
+    private ChangeStamp stamp;
+    private boolean reloadNeeded;
+    // Guarded by this
+    private boolean writeBehind;
+    private boolean closed;
+    private List<JournalEntry> pending = new ArrayList<>();
+    private HabitData pendingData;
+    private Thread flusher;
     
     public DataManager() {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         
         String userHome = System.getProperty("user.home");
-        Path appDir = Paths.get(userHome, ".habit-tracker");
-        this.dataPath = appDir.resolve(DATA_FILE);
-        this.backupPath = appDir.resolve(BACKUP_FILE);
+        this.appDir = Paths.get(userHome, ".habit-tracker");
+        this.journalPath = appDir.resolve(JOURNAL_FILE);
+        this.lockPath = appDir.resolve(LOCK_FILE);
+        
+        // "journal" appends each mutation, "snapshot" rewrites the whole file every time
+        this.journalEnabled = !"snapshot".equalsIgnoreCase(System.getProperty("habittracker.storage", "journal"));
+        this.compactThreshold = Integer.getInteger("habittracker.journal.compactEvery", DEFAULT_COMPACT_THRESHOLD);
+        this.durability = configuredDurability();
+        this.flushIntervalMillis = Long.getLong("habittracker.durability.intervalMs", DEFAULT_FLUSH_INTERVAL_MILLIS);
+        this.backupEvery = Math.max(1, Integer.getInteger("habittracker.backupEvery", DEFAULT_BACKUP_EVERY));
+        this.backupMaxAgeMillis = Long.getLong("habittracker.backupMaxAgeHours", DEFAULT_BACKUP_MAX_AGE_HOURS) * 3_600_000L;
         
         try {
             Files.createDirectories(appDir);
@@ -30,36 +120,626 @@ public class DataManager {
         }
     }
     
+    /**
+     * The habittracker.durability policy, or INTERVAL with a warning when the
+     * property names none, so a typo does not keep every command from starting
+     */
+    private static Durability configuredDurability() {
+        String value = System.getProperty("habittracker.durability", "interval");
+        try {
+            return Durability.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring habittracker.durability '" + value
+                               + "': use every-write, interval or on-shutdown. Using interval.");
+            return Durability.INTERVAL;
+        }
+    }
+    
     public HabitData loadData() {
+        long started = Metrics.startTimer();
+        HabitData loaded = locked(() -> {
+            HabitData data = replayJournal(loadSnapshot());
+            stamp = currentStamp();
+            if (lastLoad != null && lastLoad.isLegacy() && !lastLoad.isSalvaged()) {
+                // Rewrite files from before habits had ids once, with logs keyed by id
+                writeSnapshotAndResetJournal(data);
+            }
+            return data;
+        });
+        LOAD_TIME.recordSince(started);
+        return loaded;
+    }
+    
+    /**
+     * Run a read-modify-write of the data files while holding this process's
+     * write lock and an exclusive lock on habits.lock, which every habit
+     * tracker process takes before touching the files. Calls can nest.
+     */
+    public <T> T locked(Supplier<T> action) {
+        synchronized (writeLock) {
+            if (fileLocked) {
+                return action.get();
+            }
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                fileLocked = true;
+                try {
+                    return action.get();
+                } finally {
+                    fileLocked = false;
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to lock " + lockPath, e);
+            }
+        }
+    }
+    
+    private ChangeStamp currentStamp() {
+        return ChangeStamp.of(appDir.resolve(Format.JSON.dataFile), appDir.resolve(Format.BINARY.dataFile), journalPath);
+    }
+    
+    /**
+     * Load the data again if another process wrote it since this one last
+     * loaded or saved. The check only reads file metadata, so it is cheap
+     * enough to make before every command. Mutations still queued by
+     * write-behind are written first and are part of the result.
+     *
+     * @return the fresh data, or null if nothing changed
+     */
+    public HabitData reloadIfChanged() {
+        return locked(() -> {
+            if (!reloadNeeded && currentStamp().equals(stamp)) {
+                return null;
+            }
+            flush();
+            reloadNeeded = false;
+            return loadData();
+        });
+    }
+    
+    private HabitData loadSnapshot() {
+        // A binary snapshot, once migrated to, takes precedence over any JSON left behind
+        format = Files.exists(appDir.resolve(Format.BINARY.dataFile)) ? Format.BINARY : Format.JSON;
+        generation = 0;
+        lastLoad = null;
+        Path dataPath = dataPath();
+        Path backupPath = backupPath();
+        // The records read before the data file's error, used only without a readable backup
+        HabitDataReader.Result salvaged = null;
         try {
             if (Files.exists(dataPath)) {
-                return objectMapper.readValue(dataPath.toFile(), HabitData.class);
+                HabitDataReader.Result result = readSnapshot(dataPath);
+                if (!result.isSalvaged()) {
+                    return loaded(result);
+                }
+                salvaged = result;
             }
         } catch (IOException e) {
             System.err.println("Error loading data, trying backup: " + e.getMessage());
+        }
+        try {
+            if (Files.exists(backupPath)) {
+                HabitDataReader.Result backup = readSnapshot(backupPath);
+                if (salvaged == null || !backup.isSalvaged()) {
+                    if (salvaged != null) {
+                        System.err.println("Data file is damaged, loaded the backup instead: " + salvaged.getError());
+                    }
+                    return loaded(backup);
+                }
+            }
+        } catch (IOException backupError) {
+            System.err.println("Error loading backup: " + backupError.getMessage());
+        }
+        return salvaged != null ? loaded(salvaged) : new HabitData();
+    }
+    
+    /**
+     * Decode a snapshot in whichever format its header says it is
+     */
+    private HabitDataReader.Result readSnapshot(Path path) throws IOException {
+        if (BinaryFormat.isBinary(path)) {
+            return BinaryFormat.read(path);
+        }
+        return new HabitDataReader(objectMapper).read(path);
+    }
+    
+    private void writeSnapshot(HabitData data, long generation, Path path) throws IOException {
+        if (format == Format.BINARY) {
+            BinaryFormat.write(data, generation, path);
+            return;
+        }
+        try (OutputStream out = Files.newOutputStream(path);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Generation first, so even a salvaged read knows which journal belongs to it
+            generator.writeStartObject();
+            generator.writeNumberField("generation", generation);
+            generator.writeNumberField("nextHabitId", data.getNextHabitId());
+            generator.writeObjectField("habits", data.getHabits());
+            generator.writeArrayFieldStart("logs");
+            try {
+                data.forEachLog((habitId, epochDay, completed) -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeNumberField("habitId", habitId);
+                        generator.writeObjectField("date", LocalDate.ofEpochDay(epochDay));
+                        generator.writeBooleanField("completed", completed);
+                        generator.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.writeObjectField("alertSettings", data.getAlertSettings());
+            generator.writeObjectField("streaks", data.getStreaks());
+            generator.writeEndObject();
+        }
+    }
+    
+    private HabitData loaded(HabitDataReader.Result result) {
+        lastLoad = result;
+        generation = result.getGeneration();
+        LOAD_BYTES.record(result.getBytes());
+        if (result.isSalvaged()) {
+            System.err.println("Data is damaged and there is no intact copy, kept the " + result.getRecords()
+                               + " records before the error: " + result.getError());
+        }
+        if (Boolean.getBoolean("habittracker.verbose")) {
+            System.err.println("Loaded " + result);
+        }
+        return result.getData();
+    }
+    
+    /**
+     * Size, parse rate and salvage status of the most recent snapshot load,
+     * or null if there was no snapshot to load
+     */
+    public HabitDataReader.Result getLastLoad() {
+        return lastLoad;
+    }
+    
+    /**
+     * Apply the mutations recorded since the last snapshot. A torn last line
+     * (e.g. from a crash mid-append) ends the replay instead of failing the load,
+     * and the journal is cut back to the end of the last good line so later
+     * appends do not land behind a line every replay stops at.
+     * A journal based on another generation than the loaded snapshot is dropped:
+     * either a crash hit between saving a snapshot and deleting the journal, or
+     * the snapshot came from the backup and is older than the journal.
+     */
+    private HabitData replayJournal(HabitData data) {
+        journalEntries = 0;
+        journalStarted = false;
+        if (!Files.exists(journalPath)) {
+            return data;
+        }
+        
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(journalPath);
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+            return data;
+        }
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            if (line.trim().isEmpty()) {
+                start = end + 1;
+                continue;
+            }
+            JournalEntry entry;
             try {
-                if (Files.exists(backupPath)) {
-                    return objectMapper.readValue(backupPath.toFile(), HabitData.class);
+                entry = objectMapper.readValue(line, JournalEntry.class);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable journal entry " + (journalEntries + 1) + ": " + e.getMessage());
+                truncateJournal(start);
+                break;
+            }
+            if (end == bytes.length) {
+                // Complete but unterminated, so the next append must start a new line
+                endJournalLine();
+            }
+            if (entry.getType() == JournalEntry.Type.BASE) {
+                if (entry.getGeneration() == null || entry.getGeneration() != generation) {
+                    return discardJournal(data, entry.getGeneration());
                 }
-            } catch (IOException backupError) {
-                System.err.println("Error loading backup: " + backupError.getMessage());
+                journalStarted = true;
+                start = end + 1;
+                continue;
             }
+            data = entry.applyTo(data);
+            journalStarted = true;
+            journalEntries++;
+            start = end + 1;
+        }
+        return data;
+    }
+    
+    /**
+     * Drop everything from the given byte offset on, e.g. a torn last line
+     */
+    private void truncateJournal(long offset) {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to truncate journal", e);
         }
-        return new HabitData();
     }
     
+    private void endJournalLine() {
+        try {
+            Files.write(journalPath, System.lineSeparator().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to journal", e);
+        }
+    }
+    
+    private HabitData discardJournal(HabitData data, Long journalGeneration) {
+        try {
+            if (journalGeneration == null || journalGeneration < generation) {
+                // Already part of the snapshot
+                Files.deleteIfExists(journalPath);
+            } else {
+                // Newer than the snapshot that could be loaded; keep it for manual recovery
+                Path kept = appDir.resolve(JOURNAL_FILE + ".gen" + journalGeneration);
+                Files.move(journalPath, kept, StandardCopyOption.REPLACE_EXISTING);
+                System.err.println("Journal of generation " + journalGeneration + " does not apply to snapshot generation "
+                                   + generation + ", moved it to " + kept);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to set aside stale journal", e);
+        }
+        return data;
+    }
+    
+    /**
+     * Persist a single mutation. In journal mode this appends one line, and
+     * only every compactThreshold entries is the full snapshot rewritten.
+     *
+     * @param entry the mutation that was just applied
+     * @param current the data after applying it, used when compacting
+     */
+    public void append(JournalEntry entry, HabitData current) {
+        appendAll(Collections.singletonList(entry), current);
+    }
+    
+    /**
+     * Persist a batch of mutations with one write: the journal lines together,
+     * or a single snapshot if the batch would take the journal past the
+     * compaction threshold. With write-behind started the batch is only queued.
+     */
+    public void appendAll(List<JournalEntry> entries, HabitData current) {
+        synchronized (this) {
+            if (writeBehind) {
+                pending.addAll(entries);
+                pendingData = current;
+                notifyAll();
+                return;
+            }
+        }
+        locked(() -> {
+            persist(entries, current);
+            return null;
+        });
+    }
+    
+    /**
+     * Whether a batch of this many entries would still be appended to the
+     * journal, rather than written as a snapshot. Call it under {@link #locked}.
+     */
+    public boolean fitsInJournal(int entries) {
+        return journalEnabled && journalEntries + entries <= compactThreshold;
+    }
+    
+    /**
+     * Queue mutations in memory from now on and persist them according to the
+     * habittracker.durability policy (every-write, interval or on-shutdown).
+     * Meant for long-lived processes, which must call close() before exiting.
+     */
+    public synchronized void startWriteBehind() {
+        if (writeBehind || closed || durability == Durability.EVERY_WRITE) {
+            return;
+        }
+        writeBehind = true;
+        if (durability == Durability.INTERVAL) {
+            flusher = new Thread(this::runFlusher, "habit-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+    
+    public Durability getDurability() {
+        return durability;
+    }
+    
+    /**
+     * Group commit loop: wait for a mutation, let more arrive for one interval,
+     * then write everything queued so far together
+     */
+    private void runFlusher() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        wait();
+                    }
+                    // close() wakes this early and flushes itself
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    long remaining;
+                    while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    // The entries stay queued and are retried with the next batch
+                    System.err.println("Background save failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Write any queued mutations now
+     */
+    public void flush() {
+        locked(() -> {
+            List<JournalEntry> entries;
+            HabitData data;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                entries = pending;
+                data = pendingData;
+                pending = new ArrayList<>();
+                pendingData = null;
+            }
+            
+            try {
+                persist(entries, data);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    entries.addAll(pending);
+                    pending = entries;
+                    if (pendingData == null) {
+                        pendingData = data;
+                    }
+                }
+                throw e;
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Stop the background writer and persist everything still queued. Later
+     * mutations are written synchronously again.
+     */
+    public void close() {
+        Thread stopped;
+        synchronized (this) {
+            closed = true;
+            writeBehind = false;
+            stopped = flusher;
+            flusher = null;
+            notifyAll();
+        }
+        if (stopped != null) {
+            // Not interrupted: an interrupt during a write closes the file channel
+            // and can leave half a journal line behind. It stops at its next wait.
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+    
+    private void persist(List<JournalEntry> entries, HabitData current) {
+        if (!currentStamp().equals(stamp)) {
+            // Another process wrote since this one last looked. Apply the entries to
+            // what is on disk instead, without the streaks computed from the stale copy.
+            HabitData merged = loadData();
+            List<JournalEntry> rebased = new ArrayList<>(entries.size());
+            for (JournalEntry entry : entries) {
+                JournalEntry withoutStreak = entry.withStreak(null);
+                merged = withoutStreak.applyTo(merged);
+                rebased.add(withoutStreak);
+            }
+            entries = rebased;
+            current = merged;
+            reloadNeeded = true;
+        }
+        
+        if (!journalEnabled || journalEntries + entries.size() > compactThreshold) {
+            writeSnapshotAndResetJournal(current);
+            return;
+        }
+        
+        try {
+            StringBuilder lines = new StringBuilder();
+            if (!journalStarted) {
+                lines.append(objectMapper.writeValueAsString(JournalEntry.base(generation)))
+                    .append(System.lineSeparator());
+            }
+            for (JournalEntry entry : entries) {
+                lines.append(objectMapper.writeValueAsString(entry)).append(System.lineSeparator());
+            }
+            long started = Metrics.startTimer();
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            APPEND_BYTES.record(buffer.remaining());
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            APPEND_TIME.recordSince(started);
+            journalEntries += entries.size();
+            journalStarted = true;
+            stamp = currentStamp();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to journal", e);
+        }
+    }
+    
+    /**
+     * Write a full snapshot. Mutations still queued by write-behind are
+     * dropped, since the snapshot already contains them.
+     */
     public void saveData(HabitData data) {
+        locked(() -> {
+            synchronized (this) {
+                pending = new ArrayList<>();
+                pendingData = null;
+            }
+            writeSnapshotAndResetJournal(data);
+            return null;
+        });
+    }
+    
+    /**
+     * Save the next generation: write it to a temporary file, fsync it and
+     * rename it over the data file, so the data file is always either the old
+     * or the new snapshot in full. The backup is a hard link to the replaced
+     * generation, refreshed every backupEvery generations or when it is older
+     * than backupMaxAgeHours, so saving writes the data only once.
+     */
+    private void writeSnapshotAndResetJournal(HabitData data) {
+        Path dataPath = dataPath();
+        Path tempPath = appDir.resolve(format.dataFile + ".tmp");
+        long next = generation + 1;
+        long started = Metrics.startTimer();
         try {
-            if (Files.exists(dataPath)) {
-                Files.copy(dataPath, backupPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            writeSnapshot(data, next, tempPath);
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                channel.force(true);
+                SAVE_BYTES.record(channel.size());
+            }
+            
+            if (Files.exists(dataPath) && backupDue(next)) {
+                backUp(dataPath);
+            }
+            try {
+                Files.move(tempPath, dataPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, dataPath, StandardCopyOption.REPLACE_EXISTING);
             }
-            objectMapper.writeValue(dataPath.toFile(), data);
+            syncDirectory();
+            generation = next;
+            
+            // The snapshot now contains everything the journal recorded; if a crash
+            // keeps this from running, the journal's older base generation gets it
+            // discarded on the next load
+            Files.deleteIfExists(journalPath);
+            journalEntries = 0;
+            journalStarted = false;
+            stamp = currentStamp();
+            SAVE_TIME.recordSince(started);
         } catch (IOException e) {
             throw new RuntimeException("Failed to save data", e);
         }
     }
     
+    private boolean backupDue(long nextGeneration) throws IOException {
+        Path backupPath = backupPath();
+        if (nextGeneration % backupEvery == 0 || !Files.exists(backupPath)) {
+            return true;
+        }
+        FileTime modified = Files.getLastModifiedTime(backupPath);
+        return System.currentTimeMillis() - modified.toMillis() >= backupMaxAgeMillis;
+    }
+    
+    /**
+     * Keep the current data file as the backup. A hard link costs no I/O and
+     * stays valid after the data file is replaced by rename; filesystems
+     * without links get a copy.
+     */
+    private void backUp(Path dataPath) throws IOException {
+        Path backupPath = backupPath();
+        Path linkPath = appDir.resolve(format.backupFile + ".tmp");
+        Files.deleteIfExists(linkPath);
+        try {
+            Files.createLink(linkPath, dataPath);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(dataPath, linkPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // A hard link shares the original's modification time, so date the backup itself
+        Files.setLastModifiedTime(linkPath, FileTime.fromMillis(System.currentTimeMillis()));
+        Files.move(linkPath, backupPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Make the rename itself durable. Not every platform can open a directory,
+     * in which case this is best effort.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(appDir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+    
+    /**
+     * Rewrite the data in another snapshot format and remove the files of the
+     * format it replaces
+     *
+     * @param data the current data, including anything still in the journal
+     * @return the format the data was in before
+     */
+    public Format migrate(Format target, HabitData data) {
+        return locked(() -> {
+            Format previous = format;
+            if (previous == target) {
+                return previous;
+            }
+            
+            format = target;
+            saveData(data);
+            try {
+                Files.deleteIfExists(appDir.resolve(previous.dataFile));
+                Files.deleteIfExists(appDir.resolve(previous.backupFile));
+                Files.deleteIfExists(appDir.resolve(previous.dataFile + ".tmp"));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to remove " + previous + " data files", e);
+            }
+            stamp = currentStamp();
+            return previous;
+        });
+    }
+    
+    public Format getFormat() {
+        return format;
+    }
+    
+    private Path dataPath() {
+        return appDir.resolve(format.dataFile);
+    }
+    
+    private Path backupPath() {
+        return appDir.resolve(format.backupFile);
+    }
+    
     public String getDataFilePath() {
-        return dataPath.toString();
+        return dataPath().toString();
     }
 }
\ No newline at end of file
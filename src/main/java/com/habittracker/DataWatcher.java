@@ -0,0 +1,93 @@
+package com.habittracker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the data directory and calls back when a data or journal file is
+ * written. Events that arrive close together, like the temp file, rename and
+ * journal delete of one save, are collapsed into one callback.
+ */
+class DataWatcher implements Closeable {
+    private static final long SETTLE_MILLIS = 100;
+    
+    private final WatchService watchService;
+    private final Thread thread;
+    
+    private DataWatcher(WatchService watchService, Runnable onChange) {
+        this.watchService = watchService;
+        this.thread = new Thread(() -> run(onChange), "habit-data-watcher");
+        this.thread.setDaemon(true);
+    }
+    
+    static DataWatcher start(Path dir, Runnable onChange) throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                     StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        DataWatcher watcher = new DataWatcher(watchService, onChange);
+        watcher.thread.start();
+        return watcher;
+    }
+    
+    private void run(Runnable onChange) {
+        try {
+            while (true) {
+                boolean relevant = drain(watchService.take());
+                // Let the rest of a save land before looking at the files
+                WatchKey more;
+                while ((more = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= drain(more);
+                }
+                if (relevant) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Failed to reload habit data: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed, stop watching
+        }
+    }
+    
+    /**
+     * Consume a key's events and reset it
+     *
+     * @return whether any event concerned a data or journal file
+     */
+    private static boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true;
+                continue;
+            }
+            String name = event.context().toString();
+            if (name.startsWith("habits.") && !name.endsWith(".tmp") && !name.endsWith(".lock")) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+    
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+    }
+}
\ No newline at end of file
@@ -1,27 +1,53 @@
 package com.habittracker;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDate;
 
 public class Habit {
+    private final int id;
     private final String name;
     private final LocalDate createdDate;
     private final String description;
+    private final Reminder reminder;
     
+    /**
+     * @param id the habit's stable id, or 0 for HabitData to assign one
+     */
     @JsonCreator
-    public Habit(@JsonProperty("name") String name,
+    public Habit(@JsonProperty("id") int id,
+                 @JsonProperty("name") String name,
                  @JsonProperty("createdDate") LocalDate createdDate,
-                 @JsonProperty("description") String description) {
+                 @JsonProperty("description") String description,
+                 @JsonProperty("reminder") Reminder reminder) {
+        this.id = id;
         this.name = name;
         this.createdDate = createdDate;
         this.description = description;
+        this.reminder = reminder;
+    }
+    
+    public Habit(String name, LocalDate createdDate, String description, Reminder reminder) {
+        this(0, name, createdDate, description, reminder);
+    }
+    
+    public Habit(String name, LocalDate createdDate, String description) {
+        this(name, createdDate, description, null);
     }
     
     public Habit(String name, String description) {
         this(name, LocalDate.now(), description);
     }
     
+    /**
+     * Identifies the habit for as long as it exists, whatever it is renamed to;
+     * logs refer to their habit by it. Ids are never reused.
+     */
+    public int getId() {
+        return id;
+    }
+    
     public String getName() {
         return name;
     }
@@ -34,9 +60,29 @@ public class Habit {
         return description;
     }
     
+    /**
+     * The habit's own reminder schedule, or null if it has none
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Reminder getReminder() {
+        return reminder;
+    }
+    
+    public Habit withReminder(Reminder reminder) {
+        return new Habit(id, name, createdDate, description, reminder);
+    }
+    
+    public Habit withId(int id) {
+        return new Habit(id, name, createdDate, description, reminder);
+    }
+    
+    public Habit withName(String name) {
+        return new Habit(id, name, createdDate, description, reminder);
+    }
+    
     @Override
     public String toString() {
-        return String.format("Habit{name='%s', created=%s, description='%s'}", 
-                           name, createdDate, description);
+        return String.format("Habit{id=%d, name='%s', created=%s, description='%s'}", 
+                           id, name, createdDate, description);
     }
 }
\ No newline at end of file
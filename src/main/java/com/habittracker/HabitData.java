@@ -1,41 +1,368 @@
 package com.habittracker;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * An immutable snapshot of everything the tracker stores. Logs refer to their
+ * habit by its stable id, so renaming a habit never touches them. Deleting a
+ * habit only drops it from the habit list and leaves a tombstone: its logs
+ * stay in the table, skipped by every reader, until enough tombstones pile up
+ * to compact the table in memory or a snapshot is saved, which only writes
+ * the logs of existing habits.
+ *
+ * <p>Habits, their ids by name and streaks are persistent maps, so a change
+ * to one habit copies a few small trie nodes instead of every habit, and
+ * appending a log shares the table's array. Each version is immutable and
+ * shares most of its structure with the one it was made from. Appends still
+ * write into the chunks and index of the LogTable that older versions share,
+ * so a version may only be handed to another thread through synchronization.
+ */
 public class HabitData {
-    private final List<Habit> habits;
-    private final List<HabitLog> logs;
+    // Compact once more habits than this, or a quarter of the live ones, have been deleted
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 8;
+    
+    // By id, which is the order habits were added in
+    private final PersistentMap<Integer, Habit> habits;
+    private final PersistentMap<String, Integer> idsByName;
+    private final LogTable logs;
     private final AlertSettings alertSettings;
+    private final PersistentMap<String, StreakSummary> streaks;
+    private final int nextHabitId;
+    // Deleted habits whose logs are still in the table
+    private final int tombstones;
+    // The habits as a list, made on first use
+    private List<Habit> habitList;
     
+    /**
+     * Data from habits and logs that refer to them by name, as in files from
+     * before habits had ids. Habits without an id get one, and logs of
+     * habits that do not exist are dropped.
+     */
     @JsonCreator
     public HabitData(@JsonProperty("habits") List<Habit> habits,
                      @JsonProperty("logs") List<HabitLog> logs,
-                     @JsonProperty("alertSettings") AlertSettings alertSettings) {
-        this.habits = habits != null ? habits : new ArrayList<>();
-        this.logs = logs != null ? logs : new ArrayList<>();
-        this.alertSettings = alertSettings;
+                     @JsonProperty("alertSettings") AlertSettings alertSettings,
+                     @JsonProperty("streaks") Map<String, StreakSummary> streaks) {
+        // withIds is deterministic, so the table resolves names to the same ids
+        this(byId(withIds(habits)), null, tableOf(withIds(habits), logs), alertSettings,
+             PersistentMap.copyOf(streaks), 0, 0);
+    }
+    
+    public HabitData(List<Habit> habits, LogTable logs, AlertSettings alertSettings,
+                     Map<String, StreakSummary> streaks) {
+        this(habits, logs, alertSettings, streaks, 0);
+    }
+    
+    /**
+     * @param nextHabitId the id the next habit added gets, at least one more
+     *                    than the highest id of the habits
+     */
+    public HabitData(List<Habit> habits, LogTable logs, AlertSettings alertSettings,
+                     Map<String, StreakSummary> streaks, int nextHabitId) {
+        this(byId(withIds(habits)), null, logs, alertSettings, PersistentMap.copyOf(streaks), nextHabitId, 0);
+    }
+    
+    public HabitData(List<Habit> habits, List<HabitLog> logs, AlertSettings alertSettings) {
+        this(habits, logs, alertSettings, null);
     }
     
     public HabitData() {
-        this(new ArrayList<>(), new ArrayList<>(), null);
+        this(new ArrayList<>(), LogTable.empty(), null, null);
+    }
+    
+    /**
+     * @param idsByName the ids of the habits by name, or null to index them
+     */
+    private HabitData(PersistentMap<Integer, Habit> habits, PersistentMap<String, Integer> idsByName, LogTable logs,
+                      AlertSettings alertSettings, PersistentMap<String, StreakSummary> streaks, int nextHabitId,
+                      int tombstones) {
+        if (idsByName == null) {
+            idsByName = PersistentMap.empty();
+            for (Habit habit : habits.values()) {
+                idsByName = idsByName.with(habit.getName(), habit.getId());
+                nextHabitId = Math.max(nextHabitId, habit.getId() + 1);
+            }
+        }
+        this.habits = habits;
+        this.idsByName = idsByName;
+        this.logs = logs;
+        this.alertSettings = alertSettings;
+        this.streaks = streaks;
+        this.nextHabitId = Math.max(1, nextHabitId);
+        this.tombstones = tombstones;
+    }
+    
+    private static PersistentMap<Integer, Habit> byId(List<Habit> habits) {
+        PersistentMap<Integer, Habit> byId = PersistentMap.empty();
+        if (habits != null) {
+            for (Habit habit : habits) {
+                byId = byId.with(habit.getId(), habit);
+            }
+        }
+        return byId;
+    }
+    
+    private static LogTable tableOf(List<Habit> habits, List<HabitLog> logs) {
+        if (habits == null || logs == null) {
+            return LogTable.empty();
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        for (Habit habit : habits) {
+            ids.put(habit.getName(), habit.getId());
+        }
+        LogTable.Builder table = LogTable.builder();
+        for (HabitLog log : logs) {
+            Integer id = ids.get(log.getHabitName());
+            if (id != null) {
+                table.add(id, log.getDate(), log.isCompleted());
+            }
+        }
+        return table.build();
+    }
+    
+    /**
+     * The habits with ids given, in order, to those that have none
+     */
+    private static List<Habit> withIds(List<Habit> habits) {
+        if (habits == null || habits.stream().allMatch(h -> h.getId() > 0)) {
+            return habits;
+        }
+        int next = habits.stream().mapToInt(Habit::getId).max().orElse(0) + 1;
+        List<Habit> assigned = new ArrayList<>(habits.size());
+        for (Habit habit : habits) {
+            assigned.add(habit.getId() > 0 ? habit : habit.withId(next++));
+        }
+        return assigned;
     }
     
+    private HabitData with(PersistentMap<Integer, Habit> habits, PersistentMap<String, Integer> idsByName,
+                           LogTable logs, AlertSettings alertSettings, PersistentMap<String, StreakSummary> streaks) {
+        HabitData updated = new HabitData(habits, idsByName, logs, alertSettings, streaks, nextHabitId, tombstones);
+        if (habits == this.habits) {
+            updated.habitList = habitList;
+        }
+        return updated;
+    }
+    
+    /**
+     * The habits in the order they were added
+     */
     public List<Habit> getHabits() {
-        return habits;
+        List<Habit> list = habitList;
+        if (list == null) {
+            // Racing readers each build an equal list, so no lock is needed
+            list = Collections.unmodifiableList(new ArrayList<>(habits.values()));
+            habitList = list;
+        }
+        return list;
     }
     
+    /**
+     * The logs of existing habits as HabitLog objects, created as they are
+     * read; internally each log is a single packed long in a LogTable
+     */
     public List<HabitLog> getLogs() {
+        String[] names = new String[nextHabitId];
+        for (Habit habit : habits.values()) {
+            names[habit.getId()] = habit.getName();
+        }
+        return liveLogs().asList(id -> names[id]);
+    }
+    
+    /**
+     * All logs in the table, including those of deleted habits that were not
+     * compacted away yet; see forEachLog
+     */
+    @JsonIgnore
+    public LogTable getLogTable() {
         return logs;
     }
     
+    /**
+     * Visit the logs of existing habits without creating HabitLog objects
+     */
+    public void forEachLog(LogTable.Visitor visitor) {
+        if (tombstones == 0) {
+            logs.forEach(visitor);
+            return;
+        }
+        BitSet live = liveIds();
+        logs.forEach((habitId, epochDay, completed) -> {
+            if (live.get(habitId)) {
+                visitor.visit(habitId, epochDay, completed);
+            }
+        });
+    }
+    
+    private LogTable liveLogs() {
+        return tombstones == 0 ? logs : logs.retain(liveIds());
+    }
+    
+    private BitSet liveIds() {
+        BitSet live = new BitSet(nextHabitId);
+        for (Integer id : habits.keySet()) {
+            live.set(id);
+        }
+        return live;
+    }
+    
     public AlertSettings getAlertSettings() {
         return alertSettings;
     }
     
+    /**
+     * Cached streak summaries by habit name. Files written before these were
+     * persisted have none, and HabitService recomputes the missing ones on load.
+     */
+    public Map<String, StreakSummary> getStreaks() {
+        return streaks;
+    }
+    
+    /**
+     * The id the next habit added without one gets
+     */
+    public int getNextHabitId() {
+        return nextHabitId;
+    }
+    
+    /**
+     * Deleted habits whose logs are still in the log table
+     */
+    @JsonIgnore
+    public int getTombstones() {
+        return tombstones;
+    }
+    
+    /**
+     * The id of the habit with the given name, or -1 if there is none
+     */
+    public int habitId(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * Whether the habit has a log on the date, found through the log table's index
+     */
+    public boolean hasLog(String habitName, LocalDate date) {
+        int id = habitId(habitName);
+        return id >= 0 && logs.contains(id, date);
+    }
+    
     public HabitData withAlertSettings(AlertSettings alertSettings) {
-        return new HabitData(this.habits, this.logs, alertSettings);
+        return with(habits, idsByName, logs, alertSettings, streaks);
+    }
+    
+    /**
+     * Add a habit, giving it the next id unless it has one that was never
+     * used. An id below nextHabitId may belong to a deleted habit whose logs
+     * are still in the table, as when an add made on stale data is rebased
+     * after a concurrent delete, so it is never reused.
+     */
+    public HabitData withHabit(Habit habit) {
+        if (idsByName.containsKey(habit.getName())) {
+            return this;
+        }
+        int id = habit.getId() >= nextHabitId ? habit.getId() : nextHabitId;
+        Habit added = habit.getId() == id ? habit : habit.withId(id);
+        return new HabitData(habits.with(id, added), idsByName.with(added.getName(), id), logs, alertSettings,
+                             streaks, Math.max(nextHabitId, id + 1), tombstones);
+    }
+    
+    /**
+     * Replace a habit's reminder, or remove it when null
+     */
+    public HabitData withReminder(String name, Reminder reminder) {
+        Integer id = idsByName.get(name);
+        if (id == null) {
+            return this;
+        }
+        return with(habits.with(id, habits.get(id).withReminder(reminder)), idsByName, logs, alertSettings, streaks);
+    }
+    
+    /**
+     * Give a habit a new name. Its logs refer to it by id, so they stay as they are.
+     */
+    public HabitData withRenamedHabit(String name, String newName) {
+        Integer id = idsByName.get(name);
+        if (id == null || idsByName.containsKey(newName)) {
+            return this;
+        }
+        PersistentMap<String, StreakSummary> updatedStreaks = streaks;
+        StreakSummary streak = streaks.get(name);
+        if (streak != null) {
+            updatedStreaks = streaks.without(name).with(newName, streak);
+        }
+        return with(habits.with(id, habits.get(id).withName(newName)), idsByName.without(name).with(newName, id),
+                    logs, alertSettings, updatedStreaks);
+    }
+    
+    /**
+     * Remove a habit, leaving its logs behind as a tombstone until the table
+     * is next compacted
+     */
+    public HabitData withoutHabit(String name) {
+        Integer id = idsByName.get(name);
+        if (id == null) {
+            return this;
+        }
+        PersistentMap<Integer, Habit> updatedHabits = habits.without(id);
+        HabitData deleted = new HabitData(updatedHabits, idsByName.without(name), logs, alertSettings,
+                                          streaks.without(name), nextHabitId, tombstones + 1);
+        if (deleted.tombstones > Math.max(MIN_TOMBSTONES_TO_COMPACT, updatedHabits.size() / 4)) {
+            return deleted.compacted();
+        }
+        return deleted;
+    }
+    
+    /**
+     * The same data with the logs of deleted habits dropped from the table
+     */
+    public HabitData compacted() {
+        if (tombstones == 0) {
+            return this;
+        }
+        return new HabitData(habits, idsByName, liveLogs(), alertSettings, streaks, nextHabitId, 0);
+    }
+    
+    /**
+     * Add or replace a log; logs for habits that do not exist are ignored
+     */
+    public HabitData withLog(HabitLog log) {
+        int id = habitId(log.getHabitName());
+        if (id < 0) {
+            return this;
+        }
+        return with(habits, idsByName, logs.put(id, log.getDate(), log.isCompleted()), alertSettings, streaks);
+    }
+    
+    /**
+     * Like withLog, for callers that already know the habit has no log on that date
+     */
+    public HabitData withNewLog(HabitLog log) {
+        int id = habitId(log.getHabitName());
+        if (id < 0) {
+            return this;
+        }
+        return with(habits, idsByName, logs.append(id, log.getDate(), log.isCompleted()), alertSettings, streaks);
+    }
+    
+    public HabitData withStreak(String habitName, StreakSummary summary) {
+        PersistentMap<String, StreakSummary> updated = summary != null ? streaks.with(habitName, summary)
+                                                                        : streaks.without(habitName);
+        return updated == streaks ? this : with(habits, idsByName, logs, alertSettings, updated);
+    }
+    
+    public HabitData withStreaks(Map<String, StreakSummary> streaks) {
+        return with(habits, idsByName, logs, alertSettings, PersistentMap.copyOf(streaks));
     }
 }
\ No newline at end of file
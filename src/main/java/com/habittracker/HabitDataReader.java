@@ -0,0 +1,353 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming loader for habits.json. Logs are read token by token straight
+ * into a LogTable, without binding each one to a HabitLog. If the file is
+ * corrupt part way through, everything read before the bad token is kept;
+ * DataManager only falls back on that when the backup cannot be read in full.
+ *
+ * <p>Files from before habits had ids refer to habits by name in their logs.
+ * Those habits get ids in file order as they are read, and logs of habits
+ * that no longer exist are dropped.
+ */
+public class HabitDataReader {
+    private static final TypeReference<Map<String, StreakSummary>> STREAKS_TYPE =
+        new TypeReference<Map<String, StreakSummary>>() {};
+    
+    private final ObjectMapper objectMapper;
+    
+    public HabitDataReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * The outcome of a load: the data plus how fast it was parsed and whether
+     * it had to be salvaged from a damaged file
+     */
+    public static class Result {
+        private final HabitData data;
+        private final long generation;
+        private final int records;
+        private final long bytes;
+        private final long nanos;
+        private final String error;
+        private final boolean legacy;
+        
+        Result(HabitData data, long generation, int records, long bytes, long nanos, String error, boolean legacy) {
+            this.data = data;
+            this.legacy = legacy;
+            this.generation = generation;
+            this.records = records;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+        
+        public HabitData getData() {
+            return data;
+        }
+        
+        /**
+         * How many snapshots had been saved when this one was written, 0 for
+         * files from before generations were recorded
+         */
+        public long getGeneration() {
+            return generation;
+        }
+        
+        public int getRecords() {
+            return records;
+        }
+        
+        public long getBytes() {
+            return bytes;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+        
+        public double getRecordsPerSecond() {
+            return nanos > 0 ? records * 1_000_000_000.0 / nanos : 0;
+        }
+        
+        /**
+         * Whether the file was damaged and only the records before the error were kept
+         */
+        public boolean isSalvaged() {
+            return error != null;
+        }
+        
+        public String getError() {
+            return error;
+        }
+        
+        /**
+         * Whether the file predates stable habit ids and should be rewritten
+         */
+        public boolean isLegacy() {
+            return legacy;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d records, %d bytes in %.1f ms (%.0f records/s)%s",
+                               records, bytes, nanos / 1_000_000.0, getRecordsPerSecond(),
+                               error != null ? ", salvaged after error: " + error : "");
+        }
+    }
+    
+    /**
+     * Read a habits.json file.
+     *
+     * @throws IOException if the file cannot be opened or holds nothing usable
+     */
+    public Result read(Path path) throws IOException {
+        long start = System.nanoTime();
+        List<Habit> habits = new ArrayList<>();
+        HabitIds ids = new HabitIds();
+        LogTable.Builder logs = LogTable.builder();
+        AlertSettings alertSettings = null;
+        Map<String, StreakSummary> streaks = null;
+        long generation = 0;
+        String error = null;
+        boolean sawObject = false;
+        
+        try (InputStream in = Files.newInputStream(path);
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            try {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object at the start of " + path);
+                }
+                sawObject = true;
+                
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "generation":
+                            generation = parser.getValueAsLong();
+                            break;
+                        case "nextHabitId":
+                            ids.reserve(parser.getValueAsInt());
+                            break;
+                        case "habits":
+                            readArray(parser, () -> habits.add(ids.assign(parser.readValueAs(Habit.class))));
+                            break;
+                        case "logs":
+                            readArray(parser, () -> readLog(parser, logs, ids));
+                            break;
+                        case "alertSettings":
+                            alertSettings = parser.readValueAs(AlertSettings.class);
+                            break;
+                        case "streaks":
+                            streaks = parser.readValueAs(STREAKS_TYPE);
+                            break;
+                        default:
+                            parser.skipChildren();
+                            break;
+                    }
+                }
+            } catch (IOException e) {
+                if (!sawObject) {
+                    throw e;
+                }
+                error = describe(e);
+            }
+        }
+        
+        long bytes = Files.size(path);
+        HabitData data = new HabitData(habits, ids.live(habits, logs.build()), alertSettings, streaks, ids.next());
+        return new Result(data, generation, habits.size() + logs.size(), bytes, System.nanoTime() - start, error,
+                          ids.isLegacy());
+    }
+    
+    /**
+     * Habit ids as a file is read, handing out ids to habits and logs that
+     * refer to habits by name
+     */
+    static final class HabitIds {
+        private final Map<String, Integer> byName = new HashMap<>();
+        private final BitSet referenced = new BitSet();
+        private int next = 1;
+        private boolean legacy;
+        
+        void reserve(int nextHabitId) {
+            next = Math.max(next, nextHabitId);
+        }
+        
+        /**
+         * The habit with its id, a new one if it has none
+         */
+        Habit assign(Habit habit) {
+            if (habit.getId() > 0) {
+                byName.put(habit.getName(), habit.getId());
+                reserve(habit.getId() + 1);
+                return habit;
+            }
+            return habit.withId(idOf(habit.getName()));
+        }
+        
+        /**
+         * The id of the named habit, for logs that refer to it by name
+         */
+        int idOf(String name) {
+            legacy = true;
+            Integer id = byName.get(name);
+            if (id == null) {
+                id = next++;
+                byName.put(name, id);
+            }
+            return id;
+        }
+        
+        void referenced(int id) {
+            referenced.set(id);
+        }
+        
+        /**
+         * The logs, without those of habits that do not exist
+         */
+        LogTable live(List<Habit> habits, LogTable logs) {
+            BitSet live = new BitSet();
+            for (Habit habit : habits) {
+                live.set(habit.getId());
+            }
+            BitSet orphans = (BitSet) referenced.clone();
+            orphans.andNot(live);
+            return orphans.isEmpty() ? logs : logs.retain(live);
+        }
+        
+        int next() {
+            return next;
+        }
+        
+        boolean isLegacy() {
+            return legacy;
+        }
+    }
+    
+    private static String describe(IOException e) {
+        if (e instanceof JsonProcessingException && ((JsonProcessingException) e).getLocation() != null) {
+            JsonLocation location = ((JsonProcessingException) e).getLocation();
+            return ((JsonProcessingException) e).getOriginalMessage()
+                + " at line " + location.getLineNr() + ", column " + location.getColumnNr();
+        }
+        return e.getMessage();
+    }
+    
+    private interface ElementReader {
+        void read() throws IOException;
+    }
+    
+    private static void readArray(JsonParser parser, ElementReader element) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array at " + parser.getCurrentLocation());
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            element.read();
+        }
+    }
+    
+    /**
+     * Read one {"habitId" or "habitName", "date", "completed"} object.
+     * Nothing is added to the table unless the whole record parsed.
+     */
+    private static void readLog(JsonParser parser, LogTable.Builder logs, HabitIds ids) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a log object at " + parser.getCurrentLocation());
+        }
+        int habitId = 0;
+        String habitName = null;
+        LocalDate date = null;
+        boolean completed = false;
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "habitId":
+                    habitId = parser.getValueAsInt();
+                    break;
+                case "habitName":
+                    habitName = parser.getValueAsString();
+                    break;
+                case "date":
+                    date = readDate(parser);
+                    break;
+                case "completed":
+                    completed = parser.getValueAsBoolean();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new IOException("Unterminated log object at " + parser.getCurrentLocation());
+        }
+        if ((habitId <= 0 && habitName == null) || date == null) {
+            throw new IOException("Log without habitId or date at " + parser.getCurrentLocation());
+        }
+        if (habitId <= 0) {
+            habitId = ids.idOf(habitName);
+        }
+        ids.referenced(habitId);
+        logs.add(habitId, date, completed);
+    }
+    
+    /**
+     * Dates are written by JavaTimeModule as [year, month, day]; ISO strings
+     * are accepted as well
+     */
+    private static LocalDate readDate(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            try {
+                return LocalDate.parse(parser.getText());
+            } catch (java.time.DateTimeException e) {
+                throw new IOException("Invalid date '" + parser.getText() + "' at " + parser.getCurrentLocation());
+            }
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Invalid date at " + parser.getCurrentLocation());
+        }
+        int year = nextInt(parser);
+        int month = nextInt(parser);
+        int day = nextInt(parser);
+        if (parser.nextToken() != JsonToken.END_ARRAY) {
+            throw new IOException("Invalid date at " + parser.getCurrentLocation());
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (java.time.DateTimeException e) {
+            throw new IOException("Invalid date at " + parser.getCurrentLocation() + ": " + e.getMessage());
+        }
+    }
+    
+    private static int nextInt(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new IOException("Invalid date at " + parser.getCurrentLocation());
+        }
+        return parser.getIntValue();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.habittracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory lookup structures over a HabitData snapshot: habits by name and,
+ * per habit, bitsets of the days it has a log for and the days it was
+ * completed. HabitService keeps it in step with the snapshot by feeding it
+ * every JournalEntry it applies.
+ *
+ * <p>The same completions are also kept the other way round, per day: every
+ * habit gets a slot number, and each day with completions has a bitset of the
+ * slots completed on it. Habits still open on a day are the live slots minus
+ * that day's bitset, a few word operations however long the history is.
+ */
+class HabitIndex {
+    private final Map<String, Habit> habitsByName = new LinkedHashMap<>();
+    private final Map<String, CompletionBitset> recordedByHabit = new HashMap<>();
+    private final Map<String, CompletionBitset> completionsByHabit = new HashMap<>();
+    // Slots are handed out in creation order and not reused, so a deleted
+    // habit's bits in old days never count for a habit added later
+    private final Map<String, Integer> slotsByHabit = new HashMap<>();
+    private final List<String> habitsBySlot = new ArrayList<>();
+    private final BitSet liveSlots = new BitSet();
+    private final Map<Long, BitSet> completedByDay = new HashMap<>();
+    
+    static HabitIndex build(HabitData data) {
+        HabitIndex index = new HabitIndex();
+        String[] namesById = new String[data.getNextHabitId()];
+        for (Habit habit : data.getHabits()) {
+            index.habitsByName.put(habit.getName(), habit);
+            index.assignSlot(habit.getName());
+            namesById[habit.getId()] = habit.getName();
+        }
+        data.forEachLog((habitId, epochDay, completed) -> index.putLog(namesById[habitId], epochDay, completed));
+        return index;
+    }
+    
+    void apply(JournalEntry entry) {
+        switch (entry.getType()) {
+            case ADD_HABIT:
+                if (!habitsByName.containsKey(entry.getName())) {
+                    habitsByName.put(entry.getName(), entry.toHabit());
+                    assignSlot(entry.getName());
+                }
+                break;
+            case RENAME_HABIT:
+                rename(entry.getName(), entry.getNewName());
+                break;
+            case REMINDER:
+                habitsByName.computeIfPresent(entry.getName(), (name, habit) -> habit.withReminder(entry.getReminder()));
+                break;
+            case DELETE_HABIT:
+                habitsByName.remove(entry.getName());
+                recordedByHabit.remove(entry.getName());
+                completionsByHabit.remove(entry.getName());
+                Integer slot = slotsByHabit.remove(entry.getName());
+                if (slot != null) {
+                    liveSlots.clear(slot);
+                    habitsBySlot.set(slot, null);
+                }
+                break;
+            case LOG:
+                HabitLog log = entry.toLog();
+                putLog(log.getHabitName(), log.getDate().toEpochDay(), log.isCompleted());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Move a habit's entries to its new name; its bitsets and slot come along as they are
+     */
+    private void rename(String name, String newName) {
+        Habit habit = habitsByName.get(name);
+        if (habit == null || habitsByName.containsKey(newName)) {
+            return;
+        }
+        habitsByName.remove(name);
+        habitsByName.put(newName, habit.withName(newName));
+        moveKey(recordedByHabit, name, newName);
+        moveKey(completionsByHabit, name, newName);
+        Integer slot = slotsByHabit.remove(name);
+        if (slot != null) {
+            slotsByHabit.put(newName, slot);
+            habitsBySlot.set(slot, newName);
+        }
+    }
+    
+    private static <V> void moveKey(Map<String, V> map, String from, String to) {
+        V value = map.remove(from);
+        if (value != null) {
+            map.put(to, value);
+        }
+    }
+    
+    private void putLog(String habitName, long epochDay, boolean completed) {
+        recordedByHabit.computeIfAbsent(habitName, name -> new CompletionBitset()).setDay(epochDay);
+        
+        CompletionBitset completions = completionsByHabit.computeIfAbsent(habitName, name -> new CompletionBitset());
+        if (completed) {
+            completions.setDay(epochDay);
+        } else {
+            completions.clearDay(epochDay);
+        }
+        
+        Integer slot = slotsByHabit.get(habitName);
+        if (slot == null) {
+            return;
+        }
+        if (completed) {
+            completedByDay.computeIfAbsent(epochDay, day -> new BitSet()).set(slot);
+        } else {
+            BitSet day = completedByDay.get(epochDay);
+            if (day != null) {
+                day.clear(slot);
+            }
+        }
+    }
+    
+    private void assignSlot(String habitName) {
+        slotsByHabit.put(habitName, habitsBySlot.size());
+        liveSlots.set(habitsBySlot.size());
+        habitsBySlot.add(habitName);
+    }
+    
+    /**
+     * Habits not completed on the given date, in the order they were added
+     */
+    List<String> unfinishedOn(LocalDate date) {
+        BitSet open = (BitSet) liveSlots.clone();
+        BitSet completed = completedByDay.get(date.toEpochDay());
+        if (completed != null) {
+            open.andNot(completed);
+        }
+        List<String> names = new ArrayList<>(open.cardinality());
+        for (int slot = open.nextSetBit(0); slot >= 0; slot = open.nextSetBit(slot + 1)) {
+            names.add(habitsBySlot.get(slot));
+        }
+        return names;
+    }
+    
+    /**
+     * Names of habits with at least one log
+     */
+    Set<String> loggedHabits() {
+        return completionsByHabit.keySet();
+    }
+    
+    Habit findHabit(String name) {
+        return habitsByName.get(name);
+    }
+    
+    boolean hasLog(String habitName, LocalDate date) {
+        CompletionBitset recorded = recordedByHabit.get(habitName);
+        return recorded != null && recorded.get(date);
+    }
+    
+    boolean isCompleted(String habitName, LocalDate date) {
+        CompletionBitset completions = completionsByHabit.get(habitName);
+        return completions != null && completions.get(date);
+    }
+    
+    boolean hasLogs(String habitName) {
+        return completionsByHabit.containsKey(habitName);
+    }
+    
+    CompletionBitset completionsFor(String habitName) {
+        CompletionBitset completions = completionsByHabit.get(habitName);
+        return completions != null ? completions : new CompletionBitset();
+    }
+    
+    /**
+     * Logs for a habit in date order
+     */
+    List<HabitLog> logsFor(String habitName) {
+        CompletionBitset recorded = recordedByHabit.get(habitName);
+        if (recorded == null) {
+            return Collections.emptyList();
+        }
+        CompletionBitset completions = completionsByHabit.get(habitName);
+        List<HabitLog> logs = new ArrayList<>();
+        recorded.forEach(date -> logs.add(new HabitLog(habitName, date, completions.get(date))));
+        return logs;
+    }
+}
\ No newline at end of file
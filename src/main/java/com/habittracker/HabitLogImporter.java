@@ -0,0 +1,290 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams completion records from CSV or JSON lines into
+ * HabitService.logHabits. Records are parsed one at a time as they are
+ * applied and the whole import is persisted once: as journal lines when it
+ * is small, otherwise as a single snapshot. Only the journal entries of a
+ * small import are held in memory, never the input itself.
+ *
+ * <pre>
+ * CSV    habit,date[,completed]      e.g. "Morning Run",2024-01-31,true
+ * JSONL  {"habitName": "...", "date": "2024-01-31", "completed": true}
+ * </pre>
+ * Dates are ISO (YYYY-MM-DD); completed defaults to true. A CSV header line
+ * is skipped.
+ */
+public class HabitLogImporter {
+    private static final int MAX_REPORTED_ERRORS = 5;
+    
+    public enum Format {
+        CSV,
+        JSONL
+    }
+    
+    public static class Result {
+        private final long records;
+        private final long imported;
+        private final long unknownHabit;
+        private final long invalid;
+        private final long nanos;
+        
+        Result(long records, long imported, long unknownHabit, long invalid, long nanos) {
+            this.records = records;
+            this.imported = imported;
+            this.unknownHabit = unknownHabit;
+            this.invalid = invalid;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * Records that parsed, whether or not their habit exists
+         */
+        public long getRecords() {
+            return records;
+        }
+        
+        /**
+         * Records that added a log or changed its completion
+         */
+        public long getImported() {
+            return imported;
+        }
+        
+        /**
+         * Parsed records skipped because their habit does not exist
+         */
+        public long getUnknownHabit() {
+            return unknownHabit;
+        }
+        
+        /**
+         * Parsed records skipped because the same log was already recorded
+         */
+        public long getAlreadyRecorded() {
+            return records - imported - unknownHabit;
+        }
+        
+        public long getInvalid() {
+            return invalid;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+        
+        public double getRecordsPerSecond() {
+            return nanos > 0 ? records * 1_000_000_000.0 / nanos : 0;
+        }
+    }
+    
+    private final HabitService habitService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public HabitLogImporter(HabitService habitService) {
+        this.habitService = habitService;
+    }
+    
+    /**
+     * Import every record from the reader.
+     *
+     * @param format the input format, or null to detect it from the first line
+     * @param err where to report the first few invalid lines
+     */
+    public Result importFrom(BufferedReader reader, Format format, PrintStream err) throws IOException {
+        long start = System.nanoTime();
+        Records records = new Records(reader, format, err);
+        long imported;
+        try {
+            imported = habitService.logHabits(records);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (records.invalid > MAX_REPORTED_ERRORS) {
+            err.println("... " + (records.invalid - MAX_REPORTED_ERRORS) + " more invalid lines");
+        }
+        return new Result(records.records, imported, records.unknownHabit, records.invalid, System.nanoTime() - start);
+    }
+    
+    /**
+     * The input's records for existing habits, parsed a line at a time as
+     * logHabits asks for them, counting the lines it skips
+     */
+    private final class Records implements Iterator<HabitLog> {
+        private final BufferedReader reader;
+        private final PrintStream err;
+        private Format format;
+        private HabitLog next;
+        private long lineNumber;
+        private boolean firstRecord = true;
+        private long records;
+        private long unknownHabit;
+        private long invalid;
+        
+        Records(BufferedReader reader, Format format, PrintStream err) {
+            this.reader = reader;
+            this.format = format;
+            this.err = err;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = read();
+            }
+            return next != null;
+        }
+        
+        @Override
+        public HabitLog next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            HabitLog log = next;
+            next = null;
+            return log;
+        }
+        
+        private HabitLog read() {
+            String line;
+            while ((line = readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                if (format == null) {
+                    format = trimmed.startsWith("{") ? Format.JSONL : Format.CSV;
+                }
+                
+                HabitLog log;
+                try {
+                    log = format == Format.JSONL ? parseJson(trimmed) : parseCsv(trimmed);
+                } catch (IllegalArgumentException e) {
+                    if (firstRecord && format == Format.CSV) {
+                        // Header line
+                        firstRecord = false;
+                        continue;
+                    }
+                    if (++invalid <= MAX_REPORTED_ERRORS) {
+                        err.println("Line " + lineNumber + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+                firstRecord = false;
+                
+                records++;
+                if (!habitService.hasHabit(log.getHabitName())) {
+                    unknownHabit++;
+                    continue;
+                }
+                return log;
+            }
+            return null;
+        }
+        
+        private String readLine() {
+            try {
+                return reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
+    private HabitLog parseJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON");
+        }
+        JsonNode name = node.has("habitName") ? node.get("habitName") : node.get("habit");
+        JsonNode date = node.get("date");
+        if (name == null || !name.isTextual() || date == null || !date.isTextual()) {
+            throw new IllegalArgumentException("Expected habitName and date");
+        }
+        JsonNode completed = node.get("completed");
+        return new HabitLog(name.asText(), parseDate(date.asText()), completed == null || completed.asBoolean());
+    }
+    
+    private static HabitLog parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected habit,date[,completed]");
+        }
+        boolean completed = fields.size() < 3 || parseCompleted(fields.get(2));
+        return new HabitLog(fields.get(0), parseDate(fields.get(1)), completed);
+    }
+    
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date format. Use YYYY-MM-DD");
+        }
+    }
+    
+    private static boolean parseCompleted(String value) {
+        switch (value.trim().toLowerCase()) {
+            case "":
+            case "true":
+            case "yes":
+            case "1":
+                return true;
+            case "false":
+            case "no":
+            case "0":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid completed value: " + value);
+        }
+    }
+    
+    /**
+     * Split a CSV line, honouring double-quoted fields with "" escapes
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
\ No newline at end of file
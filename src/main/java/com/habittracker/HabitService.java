@@ -3,49 +3,115 @@ package com.habittracker;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
+/**
+ * Habit operations on top of the current HabitData and its HabitIndex. Not
+ * thread-safe: both are plain fields, and the index is updated in place.
+ * Callers sharing a service between threads synchronize on it, as
+ * NotificationDaemon does around forwarded commands and reloads.
+ */
 public class HabitService {
     private final DataManager dataManager;
     private HabitData habitData;
+    private HabitIndex index;
     
     public HabitService() {
         this.dataManager = new DataManager();
-        this.habitData = dataManager.loadData();
+        load(dataManager.loadData());
     }
     
-    public boolean addHabit(String name, String description) {
-        if (findHabitByName(name).isPresent()) {
+    private void load(HabitData data) {
+        this.index = HabitIndex.build(data);
+        this.habitData = withMissingStreaks(data);
+    }
+    
+    /**
+     * Pick up changes another process saved since this one loaded, such as a
+     * CLI command run while the daemon is up. Unchanged files are not re-read.
+     *
+     * @return whether anything was reloaded
+     */
+    public boolean reloadIfChanged() {
+        HabitData fresh = dataManager.reloadIfChanged();
+        if (fresh == null) {
             return false;
         }
-        
-        List<Habit> habits = new ArrayList<>(habitData.getHabits());
-        habits.add(new Habit(name, description));
-        
-        habitData = new HabitData(habits, habitData.getLogs(), habitData.getAlertSettings());
-        dataManager.saveData(habitData);
+        load(fresh);
         return true;
     }
     
-    public boolean deleteHabit(String name) {
-        Optional<Habit> habit = findHabitByName(name);
-        if (!habit.isPresent()) {
-            return false;
+    /**
+     * Run a mutation as one read-modify-write under the data file lock, on
+     * data that is current with what other processes have saved
+     */
+    private <T> T mutate(Supplier<T> mutation) {
+        return dataManager.locked(() -> {
+            reloadIfChanged();
+            return mutation.get();
+        });
+    }
+    
+    /**
+     * Fill in streak summaries absent from older files or dropped by replaying
+     * a journal entry that did not carry one
+     */
+    private HabitData withMissingStreaks(HabitData data) {
+        for (String name : index.loggedHabits()) {
+            if (!data.getStreaks().containsKey(name)) {
+                data = data.withStreak(name, StreakSummary.of(index.completionsFor(name)));
+            }
         }
-        
-        List<Habit> habits = habitData.getHabits().stream()
-            .filter(h -> !h.getName().equals(name))
-            .collect(Collectors.toList());
-        
-        List<HabitLog> logs = habitData.getLogs().stream()
-            .filter(log -> !log.getHabitName().equals(name))
-            .collect(Collectors.toList());
-        
-        habitData = new HabitData(habits, logs, habitData.getAlertSettings());
-        dataManager.saveData(habitData);
-        return true;
+        return data;
+    }
+    
+    public boolean addHabit(String name, String description) {
+        return mutate(() -> {
+            if (findHabitByName(name).isPresent()) {
+                return false;
+            }
+            
+            // The id goes into the journal, so replaying the entry gives the habit the same one
+            Habit habit = new Habit(habitData.getNextHabitId(), name, LocalDate.now(), description, null);
+            apply(JournalEntry.addHabit(habit));
+            return true;
+        });
+    }
+    
+    /**
+     * Give a habit a new name. Logs refer to habits by id, so this costs the
+     * same however long the habit's history is.
+     *
+     * @return false if the habit does not exist or the new name is taken
+     */
+    public boolean renameHabit(String name, String newName) {
+        return mutate(() -> {
+            if (!findHabitByName(name).isPresent() || findHabitByName(newName).isPresent()) {
+                return false;
+            }
+            
+            apply(JournalEntry.rename(name, newName));
+            return true;
+        });
+    }
+    
+    public boolean deleteHabit(String name) {
+        return mutate(() -> {
+            Optional<Habit> habit = findHabitByName(name);
+            if (!habit.isPresent()) {
+                return false;
+            }
+            
+            apply(JournalEntry.deleteHabit(name));
+            return true;
+        });
     }
     
     public List<Habit> listHabits() {
@@ -53,61 +119,296 @@ public class HabitService {
     }
     
     public boolean logHabit(String name, LocalDate date) {
-        if (!findHabitByName(name).isPresent()) {
-            return false;
-        }
-        
-        List<HabitLog> logs = new ArrayList<>(habitData.getLogs());
-        logs.removeIf(log -> log.getHabitName().equals(name) && log.getDate().equals(date));
-        logs.add(new HabitLog(name, date));
-        
-        habitData = new HabitData(habitData.getHabits(), logs, habitData.getAlertSettings());
-        dataManager.saveData(habitData);
-        return true;
+        return mutate(() -> {
+            if (!findHabitByName(name).isPresent()) {
+                return false;
+            }
+            
+            apply(JournalEntry.log(new HabitLog(name, date)));
+            return true;
+        });
+    }
+    
+    /**
+     * Log many completions with a single persist. Logs for habits that do not
+     * exist are skipped, and logs that are already recorded are not written again.
+     *
+     * @return how many logs were applied, not counting skipped ones
+     */
+    public int logHabits(Collection<HabitLog> logs) {
+        return logHabits(logs.iterator());
+    }
+    
+    /**
+     * Log completions as the iterator produces them, all under one lock and
+     * with a single persist at the end, so an import of any size writes at
+     * most one snapshot. Journal entries are only kept while they would still
+     * fit in the journal; a larger batch is saved as a snapshot instead.
+     *
+     * @return how many logs were applied, not counting skipped ones
+     */
+    public int logHabits(Iterator<HabitLog> logs) {
+        return mutate(() -> {
+            // Null once the batch has outgrown the journal
+            List<JournalEntry> changed = new ArrayList<>();
+            Map<String, Integer> lastChange = new HashMap<>();
+            int applied = 0;
+            while (logs.hasNext()) {
+                HabitLog log = logs.next();
+                if (!findHabitByName(log.getHabitName()).isPresent()) {
+                    continue;
+                }
+                boolean newLog = !index.hasLog(log.getHabitName(), log.getDate());
+                if (!newLog && index.isCompleted(log.getHabitName(), log.getDate()) == log.isCompleted()) {
+                    continue;
+                }
+                applied++;
+                
+                JournalEntry entry = JournalEntry.log(log);
+                index.apply(entry);
+                habitData = newLog ? habitData.withNewLog(log) : habitData.withLog(log);
+                if (changed != null && !dataManager.fitsInJournal(changed.size() + 1)) {
+                    changed = null;
+                }
+                if (changed != null) {
+                    lastChange.put(log.getHabitName(), changed.size());
+                    changed.add(entry);
+                } else {
+                    lastChange.put(log.getHabitName(), -1);
+                }
+            }
+            if (lastChange.isEmpty()) {
+                return applied;
+            }
+            
+            // Recompute each habit's streak once and journal it with the habit's
+            // last entry; replay drops the streak on the earlier ones and restores it there
+            for (Map.Entry<String, Integer> last : lastChange.entrySet()) {
+                StreakSummary streak = StreakSummary.of(index.completionsFor(last.getKey()));
+                if (changed != null) {
+                    changed.set(last.getValue(), changed.get(last.getValue()).withStreak(streak));
+                }
+                habitData = habitData.withStreak(last.getKey(), streak);
+            }
+            if (changed != null) {
+                dataManager.appendAll(changed, habitData);
+            } else {
+                dataManager.saveData(habitData);
+            }
+            return applied;
+        });
     }
     
     public void setAlertTime(LocalTime time) {
-        AlertSettings settings = new AlertSettings(time);
-        habitData = habitData.withAlertSettings(settings);
-        dataManager.saveData(habitData);
+        setAlertTimes(Collections.singletonList(time));
+    }
+    
+    /**
+     * Replace the daily alert times and enable alerts
+     */
+    public void setAlertTimes(Collection<LocalTime> times) {
+        mutate(() -> {
+            apply(JournalEntry.alert(new AlertSettings(times, true)));
+            return null;
+        });
+    }
+    
+    /**
+     * Set or, with a null reminder, clear a habit's own reminder
+     *
+     * @return false if the habit does not exist
+     */
+    public boolean setReminder(String name, Reminder reminder) {
+        return mutate(() -> {
+            if (!findHabitByName(name).isPresent()) {
+                return false;
+            }
+            
+            apply(JournalEntry.reminder(name, reminder));
+            return true;
+        });
     }
     
     public void disableAlert() {
-        if (habitData.getAlertSettings() != null) {
-            AlertSettings settings = habitData.getAlertSettings().withEnabled(false);
-            habitData = habitData.withAlertSettings(settings);
-            dataManager.saveData(habitData);
+        mutate(() -> {
+            if (habitData.getAlertSettings() != null) {
+                apply(JournalEntry.alert(habitData.getAlertSettings().withEnabled(false)));
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Apply a mutation in memory and persist it. Journal replay on load goes
+     * through the same JournalEntry.applyTo, so both paths stay identical.
+     */
+    private void apply(JournalEntry entry) {
+        dataManager.append(applyInMemory(entry), habitData);
+    }
+    
+    /**
+     * Apply a mutation to the index and snapshot without persisting it
+     *
+     * @return the entry as it should be journaled
+     */
+    private JournalEntry applyInMemory(JournalEntry entry) {
+        boolean newLog = entry.getType() == JournalEntry.Type.LOG && !index.hasLog(entry.getName(), entry.getDate());
+        index.apply(entry);
+        
+        if (entry.getType() == JournalEntry.Type.LOG) {
+            entry = entry.withStreak(updatedStreak(entry));
+        }
+        
+        if (newLog) {
+            // Nothing to replace, so skip the scan for an existing log on that date
+            habitData = habitData.withNewLog(entry.toLog()).withStreak(entry.getName(), entry.getStreak());
+        } else {
+            habitData = entry.applyTo(habitData);
         }
+        return entry;
+    }
+    
+    /**
+     * The habit's streak summary after the logged entry, which the index has
+     * already applied. Completions only extend or join runs, so they are
+     * updated incrementally; anything else is recomputed.
+     */
+    private StreakSummary updatedStreak(JournalEntry entry) {
+        CompletionBitset completions = index.completionsFor(entry.getName());
+        StreakSummary previous = habitData.getStreaks().getOrDefault(entry.getName(), StreakSummary.EMPTY);
+        if (entry.toLog().isCompleted()) {
+            return previous.afterCompleting(entry.getDate(), completions);
+        }
+        return StreakSummary.of(completions);
+    }
+    
+    /**
+     * Persist mutations in the background from now on, per the configured
+     * durability policy. The caller must close() the service before exiting.
+     */
+    public void startWriteBehind() {
+        dataManager.startWriteBehind();
+    }
+    
+    /**
+     * Write any mutations still queued by write-behind
+     */
+    public void close() {
+        dataManager.close();
+    }
+    
+    /**
+     * Convert the data file to another on-disk format
+     *
+     * @return the format it was in before
+     */
+    public DataManager.Format migrateStorage(DataManager.Format target) {
+        return mutate(() -> {
+            return dataManager.migrate(target, habitData);
+        });
+    }
+    
+    public String getDataFilePath() {
+        return dataManager.getDataFilePath();
     }
     
     public Optional<AlertSettings> getAlertSettings() {
         return Optional.ofNullable(habitData.getAlertSettings());
     }
     
+    public boolean hasHabit(String name) {
+        return findHabitByName(name).isPresent();
+    }
+    
     private Optional<Habit> findHabitByName(String name) {
-        return habitData.getHabits().stream()
-            .filter(habit -> habit.getName().equals(name))
-            .findFirst();
+        return Optional.ofNullable(index.findHabit(name));
     }
     
     public List<HabitLog> getLogsForHabit(String habitName) {
-        return habitData.getLogs().stream()
-            .filter(log -> log.getHabitName().equals(habitName))
-            .collect(Collectors.toList());
+        return index.logsFor(habitName);
     }
     
     public boolean isHabitLoggedForDate(String habitName, LocalDate date) {
-        return habitData.getLogs().stream()
-            .anyMatch(log -> log.getHabitName().equals(habitName) && 
-                           log.getDate().equals(date) && 
-                           log.isCompleted());
+        return index.isCompleted(habitName, date);
+    }
+    
+    /**
+     * Names of the habits not yet completed on the given date, answered from
+     * the index's per-day bitsets without looking at the logs
+     */
+    public List<String> unfinishedHabits(LocalDate date) {
+        return index.unfinishedOn(date);
     }
     
     public int getCurrentStreak(String habitName, LocalDate referenceDate) {
-        return StreakCalculator.calculateCurrentStreak(habitName, habitData.getLogs(), referenceDate);
+        return streakFor(habitName).currentStreak(referenceDate, index.completionsFor(habitName));
     }
     
     public int getLongestStreak(String habitName) {
-        return StreakCalculator.calculateLongestStreak(habitName, habitData.getLogs());
+        return streakFor(habitName).getLongestRun();
+    }
+    
+    /**
+     * Logged flag, current streak and best streak for every habit, in one pass.
+     * Each habit costs a bitset probe and a cached summary lookup; habits that
+     * were never logged are reported without either.
+     */
+    public StatusReport statusReport(LocalDate date) {
+        List<StatusReport.Entry> entries = new ArrayList<>(habitData.getHabits().size());
+        for (Habit habit : habitData.getHabits()) {
+            String name = habit.getName();
+            if (!index.hasLogs(name)) {
+                entries.add(new StatusReport.Entry(name, false, 0, 0));
+                continue;
+            }
+            
+            CompletionBitset completions = index.completionsFor(name);
+            StreakSummary streak = streakFor(name);
+            entries.add(new StatusReport.Entry(name,
+                                               completions.get(date),
+                                               streak.currentStreak(date, completions),
+                                               streak.getLongestRun()));
+        }
+        return new StatusReport(date, entries);
+    }
+    
+    private StreakSummary streakFor(String habitName) {
+        return habitData.getStreaks().getOrDefault(habitName, StreakSummary.EMPTY);
+    }
+    
+    /**
+     * Compare every cached streak summary with a full recomputation from the
+     * raw logs through StreakCalculator's reference walk over the dates,
+     * which does not use the completion bitsets the summaries are built from.
+     *
+     * @return names of habits whose cached summary is wrong
+     */
+    public List<String> verifyStreaks() {
+        List<String> mismatched = new ArrayList<>();
+        Map<String, List<HabitLog>> logsByHabit = new HashMap<>();
+        for (HabitLog log : habitData.getLogs()) {
+            logsByHabit.computeIfAbsent(log.getHabitName(), name -> new ArrayList<>()).add(log);
+        }
+        
+        for (Habit habit : habitData.getHabits()) {
+            String name = habit.getName();
+            List<HabitLog> logs = logsByHabit.getOrDefault(name, Collections.emptyList());
+            StreakSummary cached = streakFor(name);
+            LocalDate lastCompleted = logs.stream()
+                .filter(HabitLog::isCompleted)
+                .map(HabitLog::getDate)
+                .max(LocalDate::compareTo)
+                .orElse(null);
+            
+            boolean matches = cached.getLongestRun() == StreakCalculator.calculateLongestStreak(name, logs)
+                && (lastCompleted == null
+                    ? cached.getCurrentRunEnd() == null
+                    : lastCompleted.equals(cached.getCurrentRunEnd())
+                        && cached.getCurrentLength() == StreakCalculator.calculateCurrentStreak(name, logs, lastCompleted));
+            if (!matches) {
+                mismatched.add(name);
+            }
+        }
+        return mismatched;
     }
 }
\ No newline at end of file
@@ -1,22 +1,60 @@
 package com.habittracker;
 
-import java.awt.SystemTray;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class HabitTrackerCLI {
-    private final HabitService habitService;
-    private final NotificationService notificationService;
-    private final NotificationDaemon notificationDaemon;
+    private static final Set<String> DAEMON_COMMANDS = new HashSet<>(Arrays.asList(
+        "add", "delete", "rename", "list", "log", "status", "verify-streaks", "stats"));
+    private static final Metrics.Counter COMMAND_ERRORS = Metrics.counter("command.errors");
+    
+    // Created on first use, so each command only loads what it needs
+    private final Lazy<HabitService> habitService;
+    private final Lazy<NotificationService> notificationService;
+    private final Lazy<NotificationDaemon> notificationDaemon;
+    private final PrintStream out;
+    private final PrintStream err;
     
     public HabitTrackerCLI() {
-        this.habitService = new HabitService();
-        this.notificationService = new NotificationService(habitService);
-        this.notificationDaemon = new NotificationDaemon();
+        this.habitService = new Lazy<>(HabitService::new);
+        this.notificationService = new Lazy<>(() -> new NotificationService(habitService.get()));
+        this.notificationDaemon = new Lazy<>(() -> new NotificationDaemon(habitService, notificationService));
+        this.out = System.out;
+        this.err = System.err;
+    }
+    
+    /**
+     * A CLI over already loaded services that writes to the given streams,
+     * used by the daemon to run forwarded commands
+     */
+    HabitTrackerCLI(HabitService habitService, NotificationService notificationService,
+                    NotificationDaemon notificationDaemon, PrintStream out, PrintStream err) {
+        this.habitService = Lazy.of(habitService);
+        this.notificationService = Lazy.of(notificationService);
+        this.notificationDaemon = Lazy.of(notificationDaemon);
+        this.out = out;
+        this.err = err;
     }
     
     public static void main(String[] args) {
@@ -26,6 +64,17 @@ public class HabitTrackerCLI {
             return;
         }
         
+        // Let a running daemon execute data commands against its loaded data
+        if (args.length > 0 && isDaemonCommand(args[0]) && !Boolean.getBoolean("habittracker.local")) {
+            OptionalInt exitCode = CommandClient.forward(args, System.out, System.err);
+            if (exitCode.isPresent()) {
+                if (exitCode.getAsInt() != 0) {
+                    System.exit(exitCode.getAsInt());
+                }
+                return;
+            }
+        }
+        
         HabitTrackerCLI cli = new HabitTrackerCLI();
         
         if (args.length == 0) {
@@ -41,9 +90,40 @@ public class HabitTrackerCLI {
         }
     }
     
-    private void processCommand(String[] args) {
+    /**
+     * Commands that only read or change habit data, which a running daemon can
+     * serve from the data it already has in memory
+     */
+    static boolean isDaemonCommand(String command) {
+        return DAEMON_COMMANDS.contains(command.toLowerCase());
+    }
+    
+    void processCommand(String[] args) {
         String command = args[0].toLowerCase();
-        
+        long started = Metrics.startTimer();
+        boolean known;
+        try {
+            known = dispatch(command, args);
+        } catch (RuntimeException e) {
+            COMMAND_ERRORS.increment();
+            throw e;
+        }
+        if (!known) {
+            COMMAND_ERRORS.increment();
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        if (Metrics.ENABLED) {
+            // Per command, so e.g. a slow status shows apart from fast logs
+            Metrics.histogram("command." + command + ".time", Metrics.Unit.NANOS).recordSince(started);
+        }
+    }
+    
+    /**
+     * Run a command
+     *
+     * @return false if there is no such command
+     */
+    private boolean dispatch(String command, String[] args) {
         switch (command) {
             case "add":
                 handleAddCommand(args);
@@ -51,6 +131,9 @@ public class HabitTrackerCLI {
             case "delete":
                 handleDeleteCommand(args);
                 break;
+            case "rename":
+                handleRenameCommand(args);
+                break;
             case "list":
                 handleListCommand();
                 break;
@@ -63,6 +146,9 @@ public class HabitTrackerCLI {
             case "set-alert":
                 handleSetAlertCommand(args);
                 break;
+            case "remind":
+                handleRemindCommand(args);
+                break;
             case "disable-alert":
                 handleDisableAlertCommand();
                 break;
@@ -78,12 +164,28 @@ public class HabitTrackerCLI {
             case "test-notification":
                 handleTestNotificationCommand();
                 break;
+            case "migrate":
+                handleMigrateCommand(args);
+                break;
+            case "verify-streaks":
+                handleVerifyStreaksCommand();
+                break;
+            case "import":
+                handleImportCommand(args);
+                break;
+            case "shell":
+                handleShellCommand();
+                break;
+            case "stats":
+                handleStatsCommand();
+                break;
             case "help":
                 showHelp();
                 break;
             default:
-                throw new IllegalArgumentException("Unknown command: " + command);
+                return false;
         }
+        return true;
     }
     
     private void handleAddCommand(String[] args) {
@@ -92,12 +194,12 @@ public class HabitTrackerCLI {
         }
         
         String name = args[1];
-        String description = args.length > 2 ? String.join(" ", java.util.Arrays.copyOfRange(args, 2, args.length)) : "";
+        String description = args.length > 2 ? String.join(" ", Arrays.copyOfRange(args, 2, args.length)) : "";
         
-        if (habitService.addHabit(name, description)) {
-            System.out.println("✓ Added habit: " + name);
+        if (habitService.get().addHabit(name, description)) {
+            out.println("✓ Added habit: " + name);
         } else {
-            System.err.println("✗ Habit already exists: " + name);
+            err.println("✗ Habit already exists: " + name);
         }
     }
     
@@ -107,28 +209,52 @@ public class HabitTrackerCLI {
         }
         
         String name = args[1];
-        if (habitService.deleteHabit(name)) {
-            System.out.println("✓ Deleted habit: " + name);
+        if (habitService.get().deleteHabit(name)) {
+            out.println("✓ Deleted habit: " + name);
+        } else {
+            err.println("✗ Habit not found: " + name);
+        }
+    }
+    
+    private void handleRenameCommand(String[] args) {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: rename <habit-name> <new-name>");
+        }
+        
+        String name = args[1];
+        String newName = args[2];
+        if (habitService.get().renameHabit(name, newName)) {
+            out.println("✓ Renamed habit: " + name + " → " + newName);
+            // Scheduled reminders name their habit; in the daemon, schedule them afresh
+            if (notificationService.isInitialized()) {
+                notificationService.get().startNotifications(true);
+            }
+        } else if (habitService.get().listHabits().stream().anyMatch(h -> h.getName().equals(newName))) {
+            err.println("✗ Habit already exists: " + newName);
         } else {
-            System.err.println("✗ Habit not found: " + name);
+            err.println("✗ Habit not found: " + name);
         }
     }
     
     private void handleListCommand() {
-        List<Habit> habits = habitService.listHabits();
+        List<Habit> habits = habitService.get().listHabits();
         
         if (habits.isEmpty()) {
-            System.out.println("No habits tracked yet. Use 'add' to create your first habit.");
+            out.println("No habits tracked yet. Use 'add' to create your first habit.");
             return;
         }
         
-        System.out.println("Tracked Habits:");
+        out.println("Tracked Habits:");
         for (Habit habit : habits) {
-            System.out.printf("• %s", habit.getName());
+            out.printf("• %s", habit.getName());
             if (!habit.getDescription().isEmpty()) {
-                System.out.printf(" - %s", habit.getDescription());
+                out.printf(" - %s", habit.getDescription());
             }
-            System.out.printf(" (created: %s)%n", habit.getCreatedDate());
+            out.printf(" (created: %s)", habit.getCreatedDate());
+            if (habit.getReminder() != null) {
+                out.printf(" [reminder: %s]", habit.getReminder());
+            }
+            out.println();
         }
     }
     
@@ -148,12 +274,12 @@ public class HabitTrackerCLI {
             }
         }
         
-        if (habitService.logHabit(name, date)) {
-            int streak = habitService.getCurrentStreak(name, date);
-            System.out.printf("✓ Logged habit '%s' for %s%n", name, date);
-            System.out.printf("Current streak: %d day%s%n", streak, streak == 1 ? "" : "s");
+        if (habitService.get().logHabit(name, date)) {
+            int streak = habitService.get().getCurrentStreak(name, date);
+            out.printf("✓ Logged habit '%s' for %s%n", name, date);
+            out.printf("Current streak: %d day%s%n", streak, streak == 1 ? "" : "s");
         } else {
-            System.err.println("✗ Habit not found: " + name);
+            err.println("✗ Habit not found: " + name);
         }
     }
     
@@ -168,42 +294,227 @@ public class HabitTrackerCLI {
             }
         }
         
-        List<Habit> habits = habitService.listHabits();
+        StatusReport report = habitService.get().statusReport(date);
         
-        if (habits.isEmpty()) {
-            System.out.println("No habits tracked yet.");
+        if (report.isEmpty()) {
+            out.println("No habits tracked yet.");
             return;
         }
         
-        System.out.printf("Habit Status for %s:%n", date);
-        for (Habit habit : habits) {
-            boolean logged = habitService.isHabitLoggedForDate(habit.getName(), date);
-            int currentStreak = habitService.getCurrentStreak(habit.getName(), date);
-            int longestStreak = habitService.getLongestStreak(habit.getName());
-            
-            System.out.printf("• %s: %s (streak: %d, best: %d)%n", 
-                             habit.getName(), 
-                             logged ? "✓" : "✗", 
-                             currentStreak, 
-                             longestStreak);
+        out.printf("Habit Status for %s:%n", date);
+        for (StatusReport.Entry entry : report.getEntries()) {
+            out.printf("• %s: %s (streak: %d, best: %d)%n", 
+                             entry.getHabitName(), 
+                             entry.isLogged() ? "✓" : "✗", 
+                             entry.getCurrentStreak(), 
+                             entry.getLongestStreak());
         }
     }
     
+    private void handleMigrateCommand(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: migrate <json|binary>");
+        }
+        
+        DataManager.Format target;
+        try {
+            target = DataManager.Format.valueOf(args[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + args[1] + ". Use json or binary");
+        }
+        
+        DataManager.Format previous = habitService.get().migrateStorage(target);
+        if (previous == target) {
+            out.println("Data is already stored as " + target.name().toLowerCase());
+        } else {
+            out.printf("✓ Migrated data from %s to %s: %s%n",
+                             previous.name().toLowerCase(), target.name().toLowerCase(),
+                             habitService.get().getDataFilePath());
+        }
+    }
+    
+    private void handleVerifyStreaksCommand() {
+        List<String> mismatched = habitService.get().verifyStreaks();
+        if (mismatched.isEmpty()) {
+            out.println("✓ Cached streaks match a full recomputation");
+        } else {
+            err.println("✗ Cached streaks differ from a full recomputation for: " + String.join(", ", mismatched));
+        }
+    }
+    
+    private void handleImportCommand(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: import <file|-> [csv|jsonl]");
+        }
+        
+        HabitLogImporter.Format format = null;
+        if (args.length > 2) {
+            try {
+                format = HabitLogImporter.Format.valueOf(args[2].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown format: " + args[2] + ". Use csv or jsonl");
+            }
+        } else if (args[1].toLowerCase().endsWith(".csv")) {
+            format = HabitLogImporter.Format.CSV;
+        } else if (args[1].toLowerCase().endsWith(".jsonl")) {
+            format = HabitLogImporter.Format.JSONL;
+        }
+        
+        HabitLogImporter importer = new HabitLogImporter(habitService.get());
+        HabitLogImporter.Result result;
+        try (BufferedReader reader = "-".equals(args[1])
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            result = importer.importFrom(reader, format, err);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("File not found: " + args[1]);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + args[1], e);
+        }
+        
+        out.printf("✓ Imported %d of %d records in %.1f ms (%.0f records/s)%n",
+                         result.getImported(), result.getRecords(),
+                         result.getNanos() / 1_000_000.0, result.getRecordsPerSecond());
+        if (result.getUnknownHabit() > 0) {
+            err.println("Skipped " + result.getUnknownHabit() + " records for habits that do not exist");
+        }
+        if (result.getAlreadyRecorded() > 0) {
+            err.println("Skipped " + result.getAlreadyRecorded() + " records that were already logged");
+        }
+        if (result.getInvalid() > 0) {
+            err.println("Skipped " + result.getInvalid() + " invalid lines");
+        }
+    }
+    
+    /**
+     * Run commands read from stdin, one per line, against data loaded once.
+     * Saves go through write-behind and are flushed when the input ends, so a
+     * script can stream thousands of commands through one process. Without a
+     * terminal there is no prompt, and any failed command makes the shell
+     * exit with an error once the input is done.
+     */
+    private void handleShellCommand() {
+        boolean interactive = System.console() != null;
+        HabitService service = habitService.get();
+        service.startWriteBehind();
+        
+        int commands = 0;
+        int failed = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            while (true) {
+                if (interactive) {
+                    out.print("habit> ");
+                    out.flush();
+                }
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                List<String> args;
+                try {
+                    args = splitCommandLine(line);
+                } catch (IllegalArgumentException e) {
+                    commands++;
+                    failed++;
+                    err.println("Error: " + e.getMessage());
+                    continue;
+                }
+                if (args.isEmpty() || args.get(0).startsWith("#")) {
+                    continue;
+                }
+                String command = args.get(0).toLowerCase();
+                if ("exit".equals(command) || "quit".equals(command)) {
+                    break;
+                }
+                
+                commands++;
+                try {
+                    if ("shell".equals(command)) {
+                        throw new IllegalArgumentException("Already in the shell");
+                    }
+                    processCommand(args.toArray(new String[0]));
+                } catch (RuntimeException e) {
+                    failed++;
+                    err.println("Error: " + e.getMessage());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read commands", e);
+        } finally {
+            service.close();
+        }
+        
+        if (!interactive && failed > 0) {
+            throw new IllegalArgumentException(failed + " of " + commands + " commands failed");
+        }
+    }
+    
+    /**
+     * Split a shell line into arguments on whitespace, keeping text in single
+     * or double quotes together, with backslash escaping the next character
+     */
+    static List<String> splitCommandLine(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length() && quote != '\'') {
+                current.append(line.charAt(++i));
+                inArgument = true;
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                current.append(c);
+                inArgument = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unclosed quote in: " + line);
+        }
+        if (inArgument) {
+            args.add(current.toString());
+        }
+        return args;
+    }
+    
     private void handleSetAlertCommand(String[] args) {
         if (args.length < 2) {
-            throw new IllegalArgumentException("Usage: set-alert <time> (format: HH:MM)");
+            throw new IllegalArgumentException("Usage: set-alert <time> [time...] (format: HH:MM)");
         }
         
         try {
-            LocalTime time = LocalTime.parse(args[1], DateTimeFormatter.ofPattern("HH:mm"));
-            habitService.setAlertTime(time);
+            List<LocalTime> times = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                times.add(LocalTime.parse(args[i], DateTimeFormatter.ofPattern("HH:mm")));
+            }
+            habitService.get().setAlertTimes(times);
+            String described = formatTimes(habitService.get().getAlertSettings().get().getAlertTimes());
             
-            // Start daemon in background
-            if (notificationDaemon.startDaemon()) {
-                System.out.printf("✓ Alert set for %s - daemon started in background%n", time);
-                System.out.println("Use 'daemon-status' to check daemon status or 'stop-daemon' to stop");
+            // Start daemon in background; a running one reloads the new settings itself
+            if (notificationDaemon.get().isDaemonRunning()) {
+                out.printf("✓ Alert set for %s - the running daemon picks it up%n", described);
+            } else if (notificationDaemon.get().startDaemon()) {
+                out.printf("✓ Alert set for %s - daemon started in background%n", described);
+                out.println("Use 'daemon-status' to check daemon status or 'stop-daemon' to stop");
             } else {
-                System.err.println("Failed to start daemon. You can try running 'daemon' command manually.");
+                err.println("Failed to start daemon. You can try running 'daemon' command manually.");
             }
             
         } catch (DateTimeParseException e) {
@@ -211,83 +522,186 @@ public class HabitTrackerCLI {
         }
     }
     
+    private void handleRemindCommand(String[] args) {
+        if (args.length < 3) {
+            throw new IllegalArgumentException(
+                "Usage: remind <habit-name> <HH:MM[,HH:MM...]|off> [daily|weekdays|weekends|mon,wed,...]");
+        }
+        
+        String name = args[1];
+        Reminder reminder = null;
+        if (!"off".equalsIgnoreCase(args[2])) {
+            List<LocalTime> times = new ArrayList<>();
+            try {
+                for (String time : args[2].split(",")) {
+                    times.add(LocalTime.parse(time.trim(), DateTimeFormatter.ofPattern("HH:mm")));
+                }
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid time format. Use HH:MM (24-hour format)");
+            }
+            reminder = new Reminder(times, args.length > 3 ? parseDays(args[3]) : null);
+        }
+        
+        if (!habitService.get().setReminder(name, reminder)) {
+            err.println("✗ Habit not found: " + name);
+            return;
+        }
+        if (reminder == null) {
+            out.println("✓ Removed reminder for " + name);
+            return;
+        }
+        
+        out.printf("✓ Reminder for %s at %s%n", name, reminder);
+        // A running daemon picks the change up from the data files
+        if (notificationDaemon.get().isDaemonRunning()) {
+            return;
+        }
+        if (notificationDaemon.get().startDaemon()) {
+            out.println("Daemon started in background");
+        } else {
+            err.println("Failed to start daemon. You can try running 'daemon' command manually.");
+        }
+    }
+    
+    private static Set<DayOfWeek> parseDays(String spec) {
+        switch (spec.toLowerCase()) {
+            case "daily":
+                return EnumSet.allOf(DayOfWeek.class);
+            case "weekdays":
+                return EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+            case "weekends":
+                return EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+            default:
+                break;
+        }
+        
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String part : spec.split(",")) {
+            String prefix = part.trim().toLowerCase();
+            Optional<DayOfWeek> day = prefix.length() < 2 ? Optional.empty() : Arrays.stream(DayOfWeek.values())
+                .filter(d -> d.name().toLowerCase().startsWith(prefix))
+                .findFirst();
+            if (!day.isPresent()) {
+                throw new IllegalArgumentException("Unknown day: " + part + ". Use e.g. mon,wed,fri, weekdays or weekends");
+            }
+            days.add(day.get());
+        }
+        return days;
+    }
+    
+    static String formatTimes(List<LocalTime> times) {
+        return times.stream().map(LocalTime::toString).collect(Collectors.joining(", "));
+    }
+    
     private void handleDisableAlertCommand() {
-        habitService.disableAlert();
-        notificationService.stopNotifications();
-        System.out.println("✓ Alerts disabled");
+        habitService.get().disableAlert();
+        if (notificationService.isInitialized()) {
+            notificationService.get().stopNotifications();
+        }
+        out.println("✓ Alerts disabled");
     }
     
     private void handleDaemonCommand() {
-        Optional<AlertSettings> alertSettings = habitService.getAlertSettings();
-        if (alertSettings.isPresent()) {
+        Optional<AlertSettings> alertSettings = habitService.get().getAlertSettings();
+        boolean hasReminders = habitService.get().listHabits().stream().anyMatch(h -> h.getReminder() != null);
+        if (hasReminders && !alertSettings.filter(AlertSettings::isEnabled).isPresent()) {
+            if (notificationDaemon.get().startDaemon()) {
+                out.println("✓ Daemon started in background for habit reminders");
+                out.println("Use 'daemon-status' to check status or 'stop-daemon' to stop");
+            } else {
+                err.println("Failed to start daemon");
+            }
+        } else if (alertSettings.isPresent()) {
             AlertSettings settings = alertSettings.get();
             if (settings.isEnabled()) {
-                if (notificationDaemon.startDaemon()) {
-                    System.out.printf("✓ Daemon started in background with alert at %s%n", settings.getAlertTime());
-                    System.out.println("Use 'daemon-status' to check status or 'stop-daemon' to stop");
+                if (notificationDaemon.get().startDaemon()) {
+                    out.printf("✓ Daemon started in background with alert at %s%n", formatTimes(settings.getAlertTimes()));
+                    out.println("Use 'daemon-status' to check status or 'stop-daemon' to stop");
                 } else {
-                    System.err.println("Failed to start daemon");
+                    err.println("Failed to start daemon");
                 }
             } else {
-                System.out.println("No alert configured or alerts are disabled. Use 'set-alert' first.");
+                out.println("No alert configured or alerts are disabled. Use 'set-alert' first.");
             }
         } else {
-            System.out.println("No alert configured. Use 'set-alert' first.");
+            out.println("No alert configured. Use 'set-alert' first.");
         }
     }
     
     private void handleStopDaemonCommand() {
-        if (notificationDaemon.stopDaemon()) {
-            System.out.println("✓ Daemon stopped successfully");
+        if (notificationDaemon.get().stopDaemon()) {
+            out.println("✓ Daemon stopped successfully");
         } else {
-            System.err.println("Failed to stop daemon or daemon was not running");
+            err.println("Failed to stop daemon or daemon was not running");
         }
     }
     
     private void handleDaemonStatusCommand() {
-        notificationDaemon.showDaemonStatus();
+        notificationDaemon.get().showDaemonStatus();
     }
     
     private void handleTestNotificationCommand() {
-        System.out.println("Testing notification system...");
-        System.out.println("SystemTray supported: " + SystemTray.isSupported());
-        
-        if (!SystemTray.isSupported()) {
-            System.out.println("SystemTray is not supported on this platform");
-            return;
-        }
+        out.println("Testing notification system...");
+        out.println("Notification sinks: " + String.join(", ", notificationService.get().sinkNames()));
         
         try {
-            notificationService.testNotification();
-            System.out.println("Test notification sent successfully");
+            notificationService.get().testNotification();
+            for (NotificationPipeline.SinkStats stats : notificationService.get().sinkStats()) {
+                out.println("  " + stats);
+            }
         } catch (Exception e) {
-            System.err.println("Failed to send test notification: " + e.getMessage());
+            err.println("Failed to send test notification: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    private void handleStatsCommand() {
+        if (!Metrics.ENABLED) {
+            out.println("Metrics are disabled (habittracker.metrics=false)");
+            return;
+        }
+        List<Metrics.Metric> metrics = Metrics.all();
+        // Served by the daemon when it runs, so the numbers cover every command since it started
+        long uptimeSeconds = ManagementFactory.getRuntimeMXBean().getUptime() / 1000;
+        out.printf("Metrics of process %d, up %d:%02d:%02d%n", DaemonLifecycle.currentPid(),
+                   uptimeSeconds / 3600, uptimeSeconds / 60 % 60, uptimeSeconds % 60);
+        int width = metrics.stream().mapToInt(m -> m.getName().length()).max().orElse(0);
+        for (Metrics.Metric metric : metrics) {
+            out.printf("  %-" + width + "s  %s%n", metric.getName(), metric.summary());
+        }
+    }
+    
     private void showHelp() {
-        System.out.println("Habit Tracker CLI");
-        System.out.println("Commands:");
-        System.out.println("  add <habit-name> [description]  - Add a new habit");
-        System.out.println("  delete <habit-name>             - Delete a habit");
-        System.out.println("  list                            - List all habits");
-        System.out.println("  log <habit-name> [date]         - Log habit completion (default: today)");
-        System.out.println("  status [date]                   - Show habit status (default: today)");
-        System.out.println("  set-alert <time>                - Set daily reminder and start daemon");
-        System.out.println("  disable-alert                   - Disable notifications");
-        System.out.println("  daemon                          - Start background daemon for notifications");
-        System.out.println("  stop-daemon                     - Stop background daemon");
-        System.out.println("  daemon-status                   - Check daemon status");
-        System.out.println("  test-notification               - Test notification system");
-        System.out.println("  help                            - Show this help");
-        System.out.println();
-        System.out.println("Examples:");
-        System.out.println("  java -jar habit-tracker.jar add \"Morning Run\" \"Run for 30 minutes\"");
-        System.out.println("  java -jar habit-tracker.jar log \"Morning Run\"");
-        System.out.println("  java -jar habit-tracker.jar status");
-        System.out.println("  java -jar habit-tracker.jar set-alert 19:30");
-        System.out.println("  java -jar habit-tracker.jar daemon-status");
-        System.out.println("  java -jar habit-tracker.jar stop-daemon");
+        out.println("Habit Tracker CLI");
+        out.println("Commands:");
+        out.println("  add <habit-name> [description]  - Add a new habit");
+        out.println("  delete <habit-name>             - Delete a habit");
+        out.println("  rename <habit-name> <new-name>  - Rename a habit, keeping its history");
+        out.println("  list                            - List all habits");
+        out.println("  log <habit-name> [date]         - Log habit completion (default: today)");
+        out.println("  status [date]                   - Show habit status (default: today)");
+        out.println("  set-alert <time> [time...]      - Set daily reminders and start daemon");
+        out.println("  remind <habit> <HH:MM[,..]> [days] - Remind of one habit (days: daily, weekdays, mon,wed,..)");
+        out.println("  remind <habit> off              - Remove a habit's reminder");
+        out.println("  disable-alert                   - Disable notifications");
+        out.println("  daemon                          - Start background daemon for notifications");
+        out.println("  stop-daemon                     - Stop background daemon");
+        out.println("  daemon-status                   - Check daemon status");
+        out.println("  test-notification               - Test notification system");
+        out.println("  migrate <json|binary>           - Convert the data file to another format");
+        out.println("  verify-streaks                  - Check cached streaks against the full history");
+        out.println("  import <file|-> [csv|jsonl]     - Log completions in bulk from a file or stdin");
+        out.println("  shell                           - Run commands from stdin, one per line, in one process");
+        out.println("  stats                           - Show timings and counters of storage, streaks and commands");
+        out.println("  help                            - Show this help");
+        out.println();
+        out.println("Examples:");
+        out.println("  java -jar habit-tracker.jar add \"Morning Run\" \"Run for 30 minutes\"");
+        out.println("  java -jar habit-tracker.jar log \"Morning Run\"");
+        out.println("  java -jar habit-tracker.jar status");
+        out.println("  java -jar habit-tracker.jar set-alert 19:30");
+        out.println("  java -jar habit-tracker.jar remind \"Morning Run\" 07:00 weekdays");
+        out.println("  java -jar habit-tracker.jar daemon-status");
+        out.println("  java -jar habit-tracker.jar stop-daemon");
     }
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * A single mutation of the habit data, as appended to the journal file.
+ * Every entry sets state rather than changing it relative to what was there,
+ * so replaying an entry twice yields the same data.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+    public enum Type {
+        /** First line of a journal: the snapshot generation it applies on top of */
+        BASE,
+        ADD_HABIT,
+        DELETE_HABIT,
+        LOG,
+        ALERT,
+        REMINDER,
+        RENAME_HABIT
+    }
+    
+    private final Type type;
+    private final Integer id;
+    private final String name;
+    private final String newName;
+    private final String description;
+    private final LocalDate date;
+    private final Boolean completed;
+    private final LocalTime alertTime;
+    private final List<LocalTime> alertTimes;
+    private final Boolean enabled;
+    private final StreakSummary streak;
+    private final Reminder reminder;
+    private final Long generation;
+    
+    @JsonCreator
+    public JournalEntry(@JsonProperty("type") Type type,
+                        @JsonProperty("id") Integer id,
+                        @JsonProperty("name") String name,
+                        @JsonProperty("newName") String newName,
+                        @JsonProperty("description") String description,
+                        @JsonProperty("date") LocalDate date,
+                        @JsonProperty("completed") Boolean completed,
+                        @JsonProperty("alertTime") LocalTime alertTime,
+                        @JsonProperty("alertTimes") List<LocalTime> alertTimes,
+                        @JsonProperty("enabled") Boolean enabled,
+                        @JsonProperty("streak") StreakSummary streak,
+                        @JsonProperty("reminder") Reminder reminder,
+                        @JsonProperty("generation") Long generation) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.newName = newName;
+        this.description = description;
+        this.date = date;
+        this.completed = completed;
+        this.alertTime = alertTime;
+        this.alertTimes = alertTimes;
+        this.enabled = enabled;
+        this.streak = streak;
+        this.reminder = reminder;
+        this.generation = generation;
+    }
+    
+    public static JournalEntry base(long generation) {
+        return new JournalEntry(Type.BASE, null, null, null, null, null, null, null, null, null, null, null, generation);
+    }
+    
+    public static JournalEntry addHabit(Habit habit) {
+        // Habits from journals written before ids existed get theirs on replay
+        Integer id = habit.getId() > 0 ? habit.getId() : null;
+        return new JournalEntry(Type.ADD_HABIT, id, habit.getName(), null, habit.getDescription(),
+                                habit.getCreatedDate(), null, null, null, null, null, habit.getReminder(), null);
+    }
+    
+    public static JournalEntry deleteHabit(String name) {
+        return new JournalEntry(Type.DELETE_HABIT, null, name, null, null, null, null, null, null, null, null, null, null);
+    }
+    
+    public static JournalEntry log(HabitLog log) {
+        return new JournalEntry(Type.LOG, null, log.getHabitName(), null, null, log.getDate(),
+                                log.isCompleted(), null, null, null, null, null, null);
+    }
+    
+    public static JournalEntry alert(AlertSettings settings) {
+        // A single time is written as alertTime alone, as before multiple times existed
+        List<LocalTime> times = settings.getAlertTimes().size() > 1 ? settings.getAlertTimes() : null;
+        return new JournalEntry(Type.ALERT, null, null, null, null, null, null,
+                                settings.getAlertTime(), times, settings.isEnabled(), null, null, null);
+    }
+    
+    /**
+     * Set a habit's reminder, or remove it when null
+     */
+    public static JournalEntry reminder(String name, Reminder reminder) {
+        return new JournalEntry(Type.REMINDER, null, name, null, null, null, null, null, null, null, null, reminder, null);
+    }
+    
+    public static JournalEntry rename(String name, String newName) {
+        return new JournalEntry(Type.RENAME_HABIT, null, name, newName, null, null, null, null, null, null, null, null, null);
+    }
+    
+    /**
+     * The same entry carrying the habit's streak summary after it was applied,
+     * so replaying a log does not need to recompute streaks
+     */
+    public JournalEntry withStreak(StreakSummary streak) {
+        return new JournalEntry(type, id, name, newName, description, date, completed, alertTime, alertTimes, enabled,
+                                streak, reminder, generation);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    /**
+     * The id of an added habit, or null in journals from before habits had ids
+     */
+    public Integer getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * A renamed habit's new name
+     */
+    public String getNewName() {
+        return newName;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    public Boolean getCompleted() {
+        return completed;
+    }
+    
+    public LocalTime getAlertTime() {
+        return alertTime;
+    }
+    
+    public List<LocalTime> getAlertTimes() {
+        return alertTimes;
+    }
+    
+    public Boolean getEnabled() {
+        return enabled;
+    }
+    
+    public StreakSummary getStreak() {
+        return streak;
+    }
+    
+    public Reminder getReminder() {
+        return reminder;
+    }
+    
+    public Long getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * The habit an ADD_HABIT entry adds, with id 0 if the entry has none
+     */
+    @JsonIgnore
+    public Habit toHabit() {
+        return new Habit(id != null ? id : 0, name, date, description, reminder);
+    }
+    
+    @JsonIgnore
+    public HabitLog toLog() {
+        return new HabitLog(name, date, completed == null || completed);
+    }
+    
+    /**
+     * Apply this mutation to a snapshot, returning the resulting snapshot
+     */
+    @JsonIgnore
+    public HabitData applyTo(HabitData data) {
+        switch (type) {
+            case BASE:
+                return data;
+            case ADD_HABIT:
+                return data.withHabit(toHabit());
+            case DELETE_HABIT:
+                return data.withoutHabit(name);
+            case LOG:
+                // New logs skip the lookup for one to replace, as in HabitService
+                HabitData logged = data.hasLog(name, date) ? data.withLog(toLog()) : data.withNewLog(toLog());
+                return logged.withStreak(name, streak);
+            case ALERT:
+                return data.withAlertSettings(new AlertSettings(alertTime, alertTimes, enabled == null || enabled));
+            case REMINDER:
+                return data.withReminder(name, reminder);
+            case RENAME_HABIT:
+                return data.withRenamedHabit(name, newName);
+            default:
+                throw new IllegalStateException("Unknown journal entry type: " + type);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("JournalEntry{type=%s, name='%s', date=%s}", type, name, date);
+    }
+}
\ No newline at end of file
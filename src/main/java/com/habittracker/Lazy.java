@@ -0,0 +1,35 @@
+package com.habittracker;
+
+import java.util.function.Supplier;
+
+/**
+ * A value created on first use. Keeps commands that never touch habit data
+ * (help, daemon-status, ...) from paying for loading it.
+ */
+class Lazy<T> implements Supplier<T> {
+    private Supplier<T> factory;
+    private T value;
+    
+    Lazy(Supplier<T> factory) {
+        this.factory = factory;
+    }
+    
+    static <T> Lazy<T> of(T value) {
+        Lazy<T> lazy = new Lazy<>(null);
+        lazy.value = value;
+        return lazy;
+    }
+    
+    @Override
+    public synchronized T get() {
+        if (factory != null) {
+            value = factory.get();
+            factory = null;
+        }
+        return value;
+    }
+    
+    synchronized boolean isInitialized() {
+        return factory == null;
+    }
+}
@@ -0,0 +1,331 @@
+package com.habittracker;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compact storage for habit logs. Each log is one packed long: the habit's
+ * stable id in the high 32 bits, and the epoch day plus a completion bit in
+ * the low 32 bits. The table knows nothing of habit names, so renaming a
+ * habit leaves it untouched. HabitLog objects are only created when the logs
+ * are read back through {@link #asList(IntFunction)}.
+ *
+ * <p>Tables are immutable, and the logs live in chunks of 1024 that versions
+ * share. Appending to the newest version of a table writes into its last
+ * chunk when there is room, so the usual append-only history costs amortized
+ * O(1) per log. Replacing a log copies only its chunk, the last chunk and the
+ * array of chunk references, not the whole table. The log to replace is
+ * found through a hash index from habit and day to slot, built on the first
+ * lookup and shared by the versions that hold the same logs in the same slots.
+ *
+ * <p>Appends write into chunks and the index that older versions share, so
+ * a table must be safely published to other threads; HabitService's callers
+ * synchronize on the service.
+ */
+public class LogTable {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    private final long[][] chunks;
+    private final int size;
+    // Shared by every table over the same chunks: how many slots have been handed out
+    private final int[] claimed;
+    private final Layout layout;
+    
+    private LogTable(long[][] chunks, int size, int[] claimed, Layout layout) {
+        this.chunks = chunks;
+        this.size = size;
+        this.claimed = claimed;
+        this.layout = layout;
+    }
+    
+    public static LogTable empty() {
+        return new LogTable(new long[0][], 0, new int[] {0}, new Layout(0));
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private long entry(int index) {
+        return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    /**
+     * A table with the log added at the end; the caller guarantees the habit has
+     * no log on that date yet
+     */
+    public LogTable append(int habitId, LocalDate date, boolean completed) {
+        long entry = pack(habitId, date, completed);
+        Layout extended = layout.extend(size);
+        int chunk = size >>> CHUNK_BITS;
+        synchronized (claimed) {
+            // Slots past this table's size are unused by every older version
+            if (claimed[0] == size && chunk < chunks.length) {
+                if (chunks[chunk] == null) {
+                    chunks[chunk] = new long[CHUNK_SIZE];
+                }
+                chunks[chunk][size & CHUNK_MASK] = entry;
+                claimed[0] = size + 1;
+                return new LogTable(chunks, size + 1, claimed, extended);
+            }
+        }
+        long[][] copy = ownTail(Math.max(4, chunk + (chunk >> 1) + 1));
+        if (copy[chunk] == null) {
+            copy[chunk] = new long[CHUNK_SIZE];
+        }
+        copy[chunk][size & CHUNK_MASK] = entry;
+        return new LogTable(copy, size + 1, new int[] {size + 1}, extended);
+    }
+    
+    /**
+     * Whether the habit has a log on the date
+     */
+    public boolean contains(int habitId, LocalDate date) {
+        return layout.find(this, pack(habitId, date, false) >>> 1) >= 0;
+    }
+    
+    /**
+     * A table with the log added, replacing any log for the same habit and date
+     */
+    public LogTable put(int habitId, LocalDate date, boolean completed) {
+        long packed = pack(habitId, date, completed);
+        int slot = layout.find(this, packed >>> 1);
+        if (slot < 0) {
+            return append(habitId, date, completed);
+        }
+        if (entry(slot) == packed) {
+            return this;
+        }
+        long[][] copy = ownTail(chunks.length);
+        int chunk = slot >>> CHUNK_BITS;
+        if (copy[chunk] == chunks[chunk]) {
+            copy[chunk] = chunks[chunk].clone();
+        }
+        copy[chunk][slot & CHUNK_MASK] = packed;
+        // Every log keeps its slot, so the layout and its index carry over
+        return new LogTable(copy, size, new int[] {size}, layout);
+    }
+    
+    /**
+     * A copy of the chunk references, with room for the given number of
+     * chunks and its own copy of the partly filled last chunk, which later
+     * appends to other versions may write to
+     */
+    private long[][] ownTail(int capacity) {
+        long[][] copy = Arrays.copyOf(chunks, Math.max(capacity, (size + CHUNK_MASK) >>> CHUNK_BITS));
+        int last = size >>> CHUNK_BITS;
+        if ((size & CHUNK_MASK) != 0) {
+            copy[last] = Arrays.copyOf(chunks[last], CHUNK_SIZE);
+        }
+        for (int i = last + ((size & CHUNK_MASK) != 0 ? 1 : 0); i < copy.length; i++) {
+            copy[i] = null;
+        }
+        return copy;
+    }
+    
+    /**
+     * A table with only the logs of the given habits
+     */
+    public LogTable retain(BitSet habitIds) {
+        Builder kept = new Builder();
+        for (int i = 0; i < size; i++) {
+            long entry = entry(i);
+            if (habitIds.get(habitId(entry))) {
+                kept.addPacked(entry);
+            }
+        }
+        return kept.size() == size ? this : kept.build();
+    }
+    
+    /**
+     * Visit every log without creating HabitLog objects
+     */
+    public void forEach(Visitor visitor) {
+        for (int start = 0; start < size; start += CHUNK_SIZE) {
+            long[] chunk = chunks[start >>> CHUNK_BITS];
+            int end = Math.min(CHUNK_SIZE, size - start);
+            for (int i = 0; i < end; i++) {
+                long entry = chunk[i];
+                visitor.visit(habitId(entry), epochDay(entry), isCompleted(entry));
+            }
+        }
+    }
+    
+    /**
+     * The logs as HabitLog objects, created on access, with each habit id
+     * turned into a name by the given function
+     */
+    public List<HabitLog> asList(IntFunction<String> names) {
+        return new AbstractList<HabitLog>() {
+            @Override
+            public HabitLog get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+                }
+                long entry = entry(index);
+                return new HabitLog(names.apply(habitId(entry)), LocalDate.ofEpochDay(epochDay(entry)), isCompleted(entry));
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    private static long pack(int habitId, LocalDate date, boolean completed) {
+        long day = date.toEpochDay();
+        if (day < Integer.MIN_VALUE >> 1 || day > Integer.MAX_VALUE >> 1) {
+            throw new IllegalArgumentException("Date out of range: " + date);
+        }
+        int low = ((int) day << 1) | (completed ? 1 : 0);
+        return ((long) habitId << 32) | (low & 0xFFFFFFFFL);
+    }
+    
+    private static int habitId(long entry) {
+        return (int) (entry >>> 32);
+    }
+    
+    private static long epochDay(long entry) {
+        return (int) entry >> 1;
+    }
+    
+    private static boolean isCompleted(long entry) {
+        return (entry & 1) != 0;
+    }
+    
+    /**
+     * Collects packed logs straight from their fields, for loaders that never
+     * build HabitLog objects
+     */
+    public static class Builder {
+        private long[][] chunks = new long[16][];
+        private int size;
+        
+        public Builder add(int habitId, LocalDate date, boolean completed) {
+            return addPacked(pack(habitId, date, completed));
+        }
+        
+        private Builder addPacked(long entry) {
+            int chunk = size >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + (chunk >> 1));
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new long[CHUNK_SIZE];
+            }
+            chunks[chunk][size++ & CHUNK_MASK] = entry;
+            return this;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public LogTable build() {
+            return new LogTable(chunks, size, new int[] {size}, new Layout(size));
+        }
+    }
+    
+    /**
+     * Which habit and day each slot holds, shared by the versions of a table
+     * that agree on it: replacing a log leaves the layout as it is, and only
+     * appends extend it. The index from (habit id, day) to slot is built on
+     * the first lookup and catches up with later appends on the next one.
+     */
+    private static final class Layout {
+        private static final long EMPTY = -1;
+        
+        // Slots handed out by appends to the versions sharing this layout
+        private int claimed;
+        private long[] keys;
+        private int[] slots;
+        private int count;
+        // Slots already in the index
+        private int indexed;
+        
+        Layout(int claimed) {
+            this.claimed = claimed;
+        }
+        
+        /**
+         * The layout for a table one log longer than the given size: this one
+         * if no other version appended past that size yet, or else a new one
+         * whose index is rebuilt on its first lookup
+         */
+        synchronized Layout extend(int size) {
+            if (claimed == size) {
+                claimed = size + 1;
+                return this;
+            }
+            return new Layout(size + 1);
+        }
+        
+        /**
+         * The slot holding the key in the given table, or -1 if it has none
+         */
+        synchronized int find(LogTable table, long key) {
+            if (keys == null) {
+                keys = new long[Math.max(16, Integer.highestOneBit(Math.max(1, table.size)) << 2)];
+                Arrays.fill(keys, EMPTY);
+                slots = new int[keys.length];
+            }
+            // Every version sharing the layout has the same key in each of its slots
+            for (; indexed < table.size; indexed++) {
+                insert(table.entry(indexed) >>> 1, indexed);
+            }
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    // Slots past the table's size were appended by a newer version
+                    return slots[i] < table.size ? slots[i] : -1;
+                }
+            }
+            return -1;
+        }
+        
+        private void insert(long key, int slot) {
+            if (2 * (count + 1) > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldSlots = slots;
+                keys = new long[oldKeys.length * 2];
+                Arrays.fill(keys, EMPTY);
+                slots = new int[keys.length];
+                count = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != EMPTY) {
+                        insert(oldKeys[i], oldSlots[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                count++;
+            }
+            keys[i] = key;
+            slots[i] = slot;
+        }
+        
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+    
+    public interface Visitor {
+        void visit(int habitId, long epochDay, boolean completed);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,419 @@
+package com.habittracker;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Process-wide counters, gauges and histograms for the hot paths: storage
+ * loads and saves, streak computation, command dispatch and notification
+ * ticks. Recording is a couple of atomic adds, and with
+ * -Dhabittracker.metrics=false it is a branch on a constant the JIT folds
+ * away. Metrics are created on first use and live as long as the process;
+ * the daemon also publishes each one as an MBean named
+ * com.habittracker:type=Metrics,name=&lt;metric&gt;.
+ */
+final class Metrics {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("habittracker.metrics", "true"));
+    private static final String JMX_DOMAIN = "com.habittracker";
+    
+    // Sorted, so stats print related metrics together
+    private static final Map<String, Metric> REGISTRY = new ConcurrentSkipListMap<>();
+    private static MBeanServer mbeanServer;
+    
+    enum Unit {
+        COUNT, NANOS, BYTES
+    }
+    
+    private Metrics() {
+    }
+    
+    /**
+     * The counter with the given name, created on first use
+     */
+    static Counter counter(String name) {
+        return register(name, Counter.class, () -> new Counter(name));
+    }
+    
+    /**
+     * The histogram with the given name, created on first use
+     */
+    static Histogram histogram(String name, Unit unit) {
+        return register(name, Histogram.class, () -> new Histogram(name, unit));
+    }
+    
+    /**
+     * Publish a value read on demand, replacing any gauge of the same name
+     */
+    static void gauge(String name, LongSupplier value) {
+        if (ENABLED) {
+            add(new Gauge(name, value), true);
+        }
+    }
+    
+    /**
+     * The start of a duration for Histogram.recordSince, or 0 when disabled
+     */
+    static long startTimer() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+    
+    static List<Metric> all() {
+        return new ArrayList<>(REGISTRY.values());
+    }
+    
+    private static <T extends Metric> T register(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = REGISTRY.get(name);
+        if (metric == null) {
+            metric = add(factory.get(), false);
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+    
+    private static synchronized Metric add(Metric metric, boolean replace) {
+        Metric existing = REGISTRY.get(metric.name);
+        if (existing != null && !replace) {
+            return existing;
+        }
+        REGISTRY.put(metric.name, metric);
+        if (mbeanServer != null) {
+            publish(metric);
+        }
+        return metric;
+    }
+    
+    /**
+     * Publish every metric, now and as they are created, on the platform MBean server
+     */
+    static synchronized void registerMBeans() {
+        if (!ENABLED || mbeanServer != null) {
+            return;
+        }
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (Metric metric : REGISTRY.values()) {
+            publish(metric);
+        }
+    }
+    
+    private static void publish(Metric metric) {
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + metric.name);
+            if (mbeanServer.isRegistered(objectName)) {
+                mbeanServer.unregisterMBean(objectName);
+            }
+            mbeanServer.registerMBean(new MetricMBean(metric), objectName);
+        } catch (JMException e) {
+            System.err.println("Failed to publish metric " + metric.name + " over JMX: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * A named measurement with its current values, by attribute name
+     */
+    abstract static class Metric {
+        final String name;
+        
+        Metric(String name) {
+            this.name = name;
+        }
+        
+        String getName() {
+            return name;
+        }
+        
+        abstract Map<String, Object> values();
+        
+        /**
+         * The values in a line for the stats command
+         */
+        abstract String summary();
+    }
+    
+    static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+        
+        private Counter(String name) {
+            super(name);
+        }
+        
+        void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+        
+        void add(long amount) {
+            if (ENABLED) {
+                count.add(amount);
+            }
+        }
+        
+        long get() {
+            return count.sum();
+        }
+        
+        @Override
+        Map<String, Object> values() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("Count", get());
+            return values;
+        }
+        
+        @Override
+        String summary() {
+            return Long.toString(get());
+        }
+    }
+    
+    static final class Gauge extends Metric {
+        private final LongSupplier value;
+        
+        private Gauge(String name, LongSupplier value) {
+            super(name);
+            this.value = value;
+        }
+        
+        long get() {
+            return value.getAsLong();
+        }
+        
+        @Override
+        Map<String, Object> values() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("Value", get());
+            return values;
+        }
+        
+        @Override
+        String summary() {
+            return Long.toString(get());
+        }
+    }
+    
+    /**
+     * Counts values in log-linear buckets: eight per power of two, so a
+     * percentile is within 12.5% of the true value whatever the range, in a
+     * fixed 4 KB and without locking.
+     */
+    static final class Histogram extends Metric {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+        
+        private final Unit unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        
+        private Histogram(String name, Unit unit) {
+            super(name);
+            this.unit = unit;
+        }
+        
+        void record(long value) {
+            if (!ENABLED) {
+                return;
+            }
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucket(value));
+            sum.add(value);
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+        
+        /**
+         * Record the nanoseconds since a Metrics.startTimer()
+         */
+        void recordSince(long startedNanos) {
+            if (ENABLED) {
+                record(System.nanoTime() - startedNanos);
+            }
+        }
+        
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+        
+        /**
+         * The smallest value that falls into the bucket
+         */
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        }
+        
+        Unit getUnit() {
+            return unit;
+        }
+        
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+        
+        double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+        
+        long getMax() {
+            return max.get();
+        }
+        
+        /**
+         * The value below which the given percentage of the recorded ones fall,
+         * taken as the middle of its bucket
+         */
+        long getPercentile(double percent) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                count += counts[i];
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long low = lowerBound(i);
+                    long high = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(getMax(), low + (high - low) / 2);
+                }
+            }
+            return getMax();
+        }
+        
+        @Override
+        Map<String, Object> values() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("Count", getCount());
+            values.put("Unit", unit == Unit.NANOS ? "ms" : unit.name().toLowerCase());
+            values.put("Mean", scaled(getMean()));
+            values.put("P50", scaled(getPercentile(50)));
+            values.put("P99", scaled(getPercentile(99)));
+            values.put("Max", scaled(getMax()));
+            return values;
+        }
+        
+        private double scaled(double value) {
+            return unit == Unit.NANOS ? value / 1_000_000.0 : value;
+        }
+        
+        @Override
+        String summary() {
+            if (getCount() == 0) {
+                return "no samples";
+            }
+            return String.format("count %d, mean %s, p50 %s, p99 %s, max %s", getCount(), format(getMean()),
+                                 format(getPercentile(50)), format(getPercentile(99)), format(getMax()));
+        }
+        
+        private String format(double value) {
+            switch (unit) {
+                case NANOS:
+                    return value >= 1_000_000 ? String.format("%.1f ms", value / 1_000_000)
+                                              : String.format("%.1f µs", value / 1_000);
+                case BYTES:
+                    return value >= 1024 * 1024 ? String.format("%.1f MB", value / (1024 * 1024))
+                         : value >= 1024 ? String.format("%.1f KB", value / 1024) : String.format("%.0f B", value);
+                default:
+                    return String.format("%.1f", value);
+            }
+        }
+    }
+    
+    /**
+     * A metric's values as read-only MBean attributes
+     */
+    private static final class MetricMBean implements DynamicMBean {
+        private final Metric metric;
+        
+        MetricMBean(Metric metric) {
+            this.metric = metric;
+        }
+        
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Map<String, Object> values = metric.values();
+            if (!values.containsKey(attribute)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return values.get(attribute);
+        }
+        
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metric attributes are read-only: " + attribute.getName());
+        }
+        
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = metric.values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+        
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+        
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations");
+        }
+        
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Object> value : metric.values().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                                                      value.getKey(), true, false, false));
+            }
+            return new MBeanInfo(Metric.class.getName(), "Habit tracker metric " + metric.name,
+                                 attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.habittracker;
+
+/**
+ * A message on its way to the notification sinks. It remembers when it was
+ * created so the pipeline can measure delivery latency end to end.
+ */
+public class Notification {
+    private final String title;
+    private final String message;
+    private final long createdNanos;
+    
+    public Notification(String title, String message) {
+        this.title = title;
+        this.message = message;
+        this.createdNanos = System.nanoTime();
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return title + ": " + message;
+    }
+}
\ No newline at end of file
@@ -7,18 +7,41 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Supplier;
 
 public class NotificationDaemon {
     private static final String DAEMON_DIR = System.getProperty("user.home") + "/.habit-tracker";
     private static final String PID_FILE = DAEMON_DIR + "/daemon.pid";
     private static final String LOG_FILE = DAEMON_DIR + "/daemon.log";
+    private static final String LOCK_FILE = DAEMON_DIR + "/daemon.lock";
+    static final String PORT_FILE = DAEMON_DIR + "/daemon.port";
+    // Sent over the command channel by stop-daemon; only the daemon's own server understands it
+    private static final String STOP_REQUEST = "daemon-shutdown";
+    private static final long START_TIMEOUT_MILLIS = 15_000;
+    private static final long STOP_TIMEOUT_MILLIS = 15_000;
+    private static final Metrics.Counter RELOADS = Metrics.counter("daemon.reloads");
     
-    private final HabitService habitService;
-    private final NotificationService notificationService;
+    private final Supplier<HabitService> habitService;
+    private final Supplier<NotificationService> notificationService;
+    private final DaemonLifecycle lifecycle = new DaemonLifecycle(Paths.get(LOCK_FILE), Paths.get(PID_FILE));
+    private CommandServer commandServer;
+    private DataWatcher dataWatcher;
     
     public NotificationDaemon() {
-        this.habitService = new HabitService();
-        this.notificationService = new NotificationService(habitService);
+        Lazy<HabitService> habitService = new Lazy<>(HabitService::new);
+        this.habitService = habitService;
+        this.notificationService = new Lazy<>(() -> new NotificationService(habitService.get()));
+    }
+    
+    /**
+     * A daemon controller sharing the caller's services, which are only
+     * created if a daemon operation actually needs them
+     */
+    public NotificationDaemon(Supplier<HabitService> habitService,
+                              Supplier<NotificationService> notificationService) {
+        this.habitService = habitService;
+        this.notificationService = notificationService;
     }
     
     public static void main(String[] args) {
@@ -33,7 +56,7 @@ public class NotificationDaemon {
     }
     
     /**
-     * Start the daemon in the background
+     * Start the daemon in the background and wait until it is ready to serve
      */
     public boolean startDaemon() {
         try {
@@ -48,6 +71,7 @@ public class NotificationDaemon {
             if (!Files.exists(daemonDir)) {
                 Files.createDirectories(daemonDir);
             }
+            lifecycle.clearStalePid();
             
             // Get the current JAR path
             String jarPath = getJarPath();
@@ -59,6 +83,12 @@ public class NotificationDaemon {
             // Build command to start daemon process
             List<String> command = new ArrayList<>();
             command.add("java");
+            // Pass on settings such as habittracker.notify.sinks
+            for (String key : System.getProperties().stringPropertyNames()) {
+                if (key.startsWith("habittracker.") && !"habittracker.local".equals(key)) {
+                    command.add("-D" + key + "=" + System.getProperty(key));
+                }
+            }
             command.add("-jar");
             command.add(jarPath);
             command.add("daemon-process");
@@ -70,12 +100,25 @@ public class NotificationDaemon {
             
             Process process = pb.start();
             
-            // Write PID to file (Java 8 compatible approach)
-            writePidFile(getProcessId(process));
+            // The daemon writes its own PID once it is serving
+            Optional<Long> pid = lifecycle.awaitReady(process, START_TIMEOUT_MILLIS);
+            if (!pid.isPresent()) {
+                if (process.isAlive()) {
+                    System.err.println("Daemon did not get ready within " + START_TIMEOUT_MILLIS / 1000
+                                       + " seconds, see " + LOG_FILE);
+                } else {
+                    System.err.println("Daemon exited during startup (exit code " + process.exitValue()
+                                       + "), see " + LOG_FILE);
+                }
+                return false;
+            }
             
-            System.out.println("✓ Daemon started successfully");
+            System.out.println("✓ Daemon started successfully (PID: " + pid.get() + ")");
             return true;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             System.err.println("Failed to start daemon: " + e.getMessage());
             return false;
@@ -83,31 +126,32 @@ public class NotificationDaemon {
     }
     
     /**
-     * Stop the daemon
+     * Ask the daemon to shut down over its command channel and wait for it
+     * to exit
      */
     public boolean stopDaemon() {
         try {
-            Optional<Long> pid = readPidFile();
-            if (!pid.isPresent()) {
-                System.out.println("No daemon PID file found");
+            if (!isDaemonRunning()) {
+                lifecycle.clearStalePid();
+                System.out.println("Daemon is not running");
                 return false;
             }
             
-            // Try to kill the process
-            ProcessBuilder pb = new ProcessBuilder("kill", String.valueOf(pid.get()));
-            Process process = pb.start();
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                // Clean up PID file
-                Files.deleteIfExists(Paths.get(PID_FILE));
-                System.out.println("✓ Daemon stopped successfully");
-                return true;
-            } else {
-                System.err.println("Failed to stop daemon (exit code: " + exitCode + ")");
+            OptionalInt exitCode = CommandClient.forward(new String[] {STOP_REQUEST}, System.out, System.err);
+            if (!exitCode.isPresent()) {
+                System.err.println("Daemon (PID: " + lifecycle.readPid().map(String::valueOf).orElse("unknown")
+                                   + ") is not accepting commands; stop it with kill");
+                return false;
+            }
+            if (exitCode.getAsInt() != 0 || !lifecycle.awaitStopped(STOP_TIMEOUT_MILLIS)) {
+                System.err.println("Daemon did not stop within " + STOP_TIMEOUT_MILLIS / 1000 + " seconds");
                 return false;
             }
+            return true;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             System.err.println("Failed to stop daemon: " + e.getMessage());
             return false;
@@ -115,31 +159,10 @@ public class NotificationDaemon {
     }
     
     /**
-     * Check if daemon is running
+     * Check if daemon is running, from the lock it holds
      */
     public boolean isDaemonRunning() {
-        try {
-            Optional<Long> pid = readPidFile();
-            if (!pid.isPresent()) {
-                return false;
-            }
-            
-            // Check if process is still running
-            ProcessBuilder pb = new ProcessBuilder("kill", "-0", String.valueOf(pid.get()));
-            Process process = pb.start();
-            int exitCode = process.waitFor();
-            
-            if (exitCode != 0) {
-                // Process is not running, clean up stale PID file
-                Files.deleteIfExists(Paths.get(PID_FILE));
-                return false;
-            }
-            
-            return true;
-            
-        } catch (Exception e) {
-            return false;
-        }
+        return lifecycle.isRunning();
     }
     
     /**
@@ -147,15 +170,19 @@ public class NotificationDaemon {
      */
     public void showDaemonStatus() {
         if (isDaemonRunning()) {
-            Optional<Long> pid = readPidFile();
-            System.out.println("✓ Daemon is running (PID: " + pid.orElse(0L) + ")");
+            Optional<Long> pid = lifecycle.readPid();
+            if (pid.isPresent()) {
+                System.out.println("✓ Daemon is running (PID: " + pid.get() + ")");
+            } else {
+                System.out.println("✓ Daemon is running (starting up)");
+            }
             
             // Show alert settings
-            Optional<AlertSettings> alertSettings = habitService.getAlertSettings();
+            Optional<AlertSettings> alertSettings = habitService.get().getAlertSettings();
             if (alertSettings.isPresent()) {
                 AlertSettings settings = alertSettings.get();
                 if (settings.isEnabled()) {
-                    System.out.println("  Alert time: " + settings.getAlertTime());
+                    System.out.println("  Alert time: " + HabitTrackerCLI.formatTimes(settings.getAlertTimes()));
                 } else {
                     System.out.println("  Alerts are disabled");
                 }
@@ -174,19 +201,56 @@ public class NotificationDaemon {
         try {
             System.out.println("Starting notification daemon...");
             
+            if (!lifecycle.acquire()) {
+                System.err.println("Another daemon is already running");
+                System.exit(1);
+            }
+            
             // Set up shutdown hook
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("Shutting down daemon...");
-                notificationService.stopNotifications();
+                if (commandServer != null) {
+                    commandServer.close();
+                }
+                if (dataWatcher != null) {
+                    dataWatcher.close();
+                }
+                notificationService.get().close();
                 try {
-                    Files.deleteIfExists(Paths.get(PID_FILE));
-                } catch (IOException e) {
-                    // Ignore cleanup errors
+                    habitService.get().close();
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to save pending changes: " + e.getMessage());
                 }
+                lifecycle.release();
             }));
             
+            // Commands arrive one after another here, so let saves batch up
+            habitService.get().startWriteBehind();
+            
             // Start notifications
-            notificationService.startNotifications(true);
+            notificationService.get().startNotifications(true);
+            
+            // Serve CLI commands from the data already loaded here
+            try {
+                commandServer = CommandServer.start(Paths.get(PORT_FILE), this::executeCommand);
+                System.out.println("Serving CLI commands on port " + commandServer.getPort());
+            } catch (IOException e) {
+                System.err.println("Could not start command server, CLI will run commands locally: " + e.getMessage());
+            }
+            
+            // Pick up changes from CLI commands that ran locally instead of through the server
+            try {
+                dataWatcher = DataWatcher.start(Paths.get(DAEMON_DIR), this::reloadData);
+            } catch (IOException e) {
+                System.err.println("Could not watch data files, changes made elsewhere need a daemon restart: " + e.getMessage());
+            }
+            
+            // Metrics accumulate here for as long as the daemon runs; let JMX clients see them
+            Metrics.registerMBeans();
+            
+            // Tell a waiting CLI the daemon is up
+            lifecycle.markReady();
+            System.out.println("Daemon ready (PID: " + DaemonLifecycle.currentPid() + ")");
             
             // Keep daemon alive
             try {
@@ -202,56 +266,66 @@ public class NotificationDaemon {
     }
     
     /**
-     * Get the path to the current JAR file
+     * Reload habit data another process saved, and reschedule notifications
+     * in case the alert settings changed
      */
-    private String getJarPath() {
-        try {
-            return NotificationDaemon.class.getProtectionDomain()
-                .getCodeSource().getLocation().toURI().getPath();
-        } catch (Exception e) {
-            return null;
+    private void reloadData() {
+        HabitService service = habitService.get();
+        synchronized (service) {
+            reloadIfChanged(service);
         }
     }
     
     /**
-     * Get process ID in Java 8 compatible way
+     * Reload what another process saved and reschedule reminders to match.
+     * The caller holds the service's monitor.
      */
-    private long getProcessId(Process process) {
-        try {
-            // Use reflection to get PID from Process object
-            java.lang.reflect.Field pidField = process.getClass().getDeclaredField("pid");
-            pidField.setAccessible(true);
-            return pidField.getLong(process);
-        } catch (Exception e) {
-            // Fallback: return 0 if we can't get PID
-            System.err.println("Warning: Could not get process ID: " + e.getMessage());
-            return 0;
+    private void reloadIfChanged(HabitService service) {
+        if (service.reloadIfChanged()) {
+            RELOADS.increment();
+            System.out.println("Reloaded habit data changed by another process");
+            notificationService.get().startNotifications(true);
         }
     }
     
     /**
-     * Write PID to file
+     * Run a command forwarded by the CLI against this daemon's services
      */
-    private void writePidFile(long pid) throws IOException {
-        try (FileWriter writer = new FileWriter(PID_FILE)) {
-            writer.write(String.valueOf(pid));
+    private int executeCommand(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 1 && STOP_REQUEST.equals(args[0])) {
+            // Exit from another thread; the shutdown hook closes the server, which
+            // waits for this response to be written first
+            Thread exit = new Thread(() -> System.exit(0), "habit-daemon-stop");
+            exit.start();
+            return 0;
+        }
+        
+        HabitService service = habitService.get();
+        HabitTrackerCLI cli = new HabitTrackerCLI(service, notificationService.get(), this, out, err);
+        // Commands and reloads take turns, so a command never sees half a reload
+        synchronized (service) {
+            try {
+                // The watcher reloads asynchronously; a cheap stamp check keeps a
+                // command run right after another process's write from seeing stale data
+                reloadIfChanged(service);
+                cli.processCommand(args);
+                return 0;
+            } catch (Exception e) {
+                err.println("Error: " + e.getMessage());
+                return 1;
+            }
         }
     }
     
     /**
-     * Read PID from file
+     * Get the path to the current JAR file
      */
-    private Optional<Long> readPidFile() {
+    private String getJarPath() {
         try {
-            if (!Files.exists(Paths.get(PID_FILE))) {
-                return Optional.empty();
-            }
-            
-            String pidStr = new String(Files.readAllBytes(Paths.get(PID_FILE))).trim();
-            return Optional.of(Long.parseLong(pidStr));
-            
+            return NotificationDaemon.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI().getPath();
         } catch (Exception e) {
-            return Optional.empty();
+            return null;
         }
     }
 }
\ No newline at end of file
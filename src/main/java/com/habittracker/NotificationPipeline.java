@@ -0,0 +1,312 @@
+package com.habittracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers notifications to a set of sinks off the caller's thread. Alerts
+ * go into a bounded queue and one dispatcher thread hands each of them to
+ * every sink at once, each sink running on a thread of its own with its own
+ * timeout. A sink that fails or hangs only costs its own delivery: after a
+ * few failures in a row its circuit opens and it is skipped for a while,
+ * then tried again with a single notification.
+ *
+ * <p>Per sink, the pipeline counts deliveries, failures, timeouts and skips,
+ * and keeps the latency from a notification's creation to its delivery.
+ */
+class NotificationPipeline {
+    static final int QUEUE_CAPACITY = 64;
+    private static final int FAILURES_TO_OPEN = 3;
+    private static final long OPEN_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Notification STOP = new Notification("", "");
+    private static final Metrics.Histogram DELIVERY_TIME = Metrics.histogram("notify.delivery.time", Metrics.Unit.NANOS);
+    
+    private final BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Channel> channels = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread dispatcher;
+    private boolean closed;
+    
+    /**
+     * A sink with its thread, circuit breaker and counters
+     */
+    private static final class Channel {
+        final NotificationSink sink;
+        final long timeoutNanos;
+        final ExecutorService executor;
+        final SinkStats stats;
+        // Only touched by the dispatcher thread
+        Future<?> inFlight;
+        int consecutiveFailures;
+        long openUntilNanos;
+        
+        Channel(NotificationSink sink, long timeoutMillis) {
+            this.sink = sink;
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.stats = new SinkStats(sink.getName());
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "habit-notify-" + sink.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /**
+     * Delivery counters and latency for one sink
+     */
+    static final class SinkStats {
+        private final String sinkName;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private volatile boolean circuitOpen;
+        
+        private SinkStats(String sinkName) {
+            this.sinkName = sinkName;
+        }
+        
+        private void recordDelivery(long latencyNanos) {
+            delivered.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+        
+        String getSinkName() {
+            return sinkName;
+        }
+        
+        long getDelivered() {
+            return delivered.get();
+        }
+        
+        long getFailed() {
+            return failed.get();
+        }
+        
+        long getTimedOut() {
+            return timedOut.get();
+        }
+        
+        /**
+         * Notifications not attempted because the circuit was open
+         */
+        long getSkipped() {
+            return skipped.get();
+        }
+        
+        boolean isCircuitOpen() {
+            return circuitOpen;
+        }
+        
+        double getMeanLatencyMillis() {
+            long count = delivered.get();
+            return count == 0 ? 0 : totalLatencyNanos.get() / (count * 1_000_000.0);
+        }
+        
+        double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1_000_000.0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s: %d delivered, %d failed, %d timed out, %d skipped%s, latency mean %.1f ms, max %.1f ms",
+                                 sinkName, getDelivered(), getFailed(), getTimedOut(), getSkipped(),
+                                 circuitOpen ? " (circuit open)" : "", getMeanLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+    
+    /**
+     * Add a sink; only before the first notification is submitted
+     */
+    synchronized NotificationPipeline add(NotificationSink sink, long timeoutMillis) {
+        if (dispatcher != null) {
+            throw new IllegalStateException("Sinks must be added before notifications are submitted");
+        }
+        channels.add(new Channel(sink, timeoutMillis));
+        return this;
+    }
+    
+    synchronized boolean isEmpty() {
+        return channels.isEmpty();
+    }
+    
+    synchronized List<String> sinkNames() {
+        List<String> names = new ArrayList<>();
+        for (Channel channel : channels) {
+            names.add(channel.sink.getName());
+        }
+        return names;
+    }
+    
+    /**
+     * Queue a notification for delivery without waiting for it
+     *
+     * @return false if the queue is full or the pipeline closed, and the
+     *         notification was dropped
+     */
+    synchronized boolean submit(Notification notification) {
+        if (closed || !queue.offer(notification)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (dispatcher == null) {
+            dispatcher = new Thread(this::dispatchAll, "habit-notifications");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+        return true;
+    }
+    
+    synchronized List<SinkStats> stats() {
+        List<SinkStats> stats = new ArrayList<>();
+        for (Channel channel : channels) {
+            stats.add(channel.stats);
+        }
+        return Collections.unmodifiableList(stats);
+    }
+    
+    long getDropped() {
+        return dropped.get();
+    }
+    
+    int getQueued() {
+        return queue.size();
+    }
+    
+    /**
+     * Stop taking notifications, deliver the queued ones for up to the given
+     * time, then stop the sinks
+     */
+    void close(long waitMillis) {
+        Thread running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = dispatcher;
+        }
+        if (running != null) {
+            try {
+                if (queue.offer(STOP, waitMillis, TimeUnit.MILLISECONDS)) {
+                    running.join(waitMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.interrupt();
+        }
+        for (Channel channel : channels) {
+            channel.executor.shutdownNow();
+            try {
+                channel.sink.close();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to close notification sink " + channel.sink.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void dispatchAll() {
+        try {
+            while (true) {
+                Notification notification = queue.take();
+                if (notification == STOP) {
+                    return;
+                }
+                dispatch(notification);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void dispatch(Notification notification) throws InterruptedException {
+        long started = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            futures.add(start(channel, notification, started));
+        }
+        
+        for (int i = 0; i < channels.size(); i++) {
+            Channel channel = channels.get(i);
+            Future<?> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            long remaining = channel.timeoutNanos - (System.nanoTime() - started);
+            try {
+                future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+                long latency = System.nanoTime() - notification.getCreatedNanos();
+                channel.stats.recordDelivery(latency);
+                DELIVERY_TIME.record(latency);
+                succeeded(channel);
+                System.out.printf("✓ Notification sent via %s in %.1f ms%n", channel.sink.getName(), latency / 1_000_000.0);
+            } catch (TimeoutException e) {
+                // Interrupt it; a sink stuck in uninterruptible I/O stays busy and keeps failing
+                future.cancel(true);
+                channel.stats.timedOut.incrementAndGet();
+                failed(channel, "timed out after " + TimeUnit.NANOSECONDS.toMillis(channel.timeoutNanos) + " ms");
+            } catch (ExecutionException e) {
+                channel.stats.failed.incrementAndGet();
+                failed(channel, String.valueOf(e.getCause().getMessage()));
+            }
+        }
+    }
+    
+    /**
+     * Hand the notification to a sink's thread, unless its circuit is open or
+     * it is still stuck on an earlier one
+     *
+     * @return the delivery, or null if the sink was not tried
+     */
+    private Future<?> start(Channel channel, Notification notification, long now) {
+        if (channel.consecutiveFailures >= FAILURES_TO_OPEN && now - channel.openUntilNanos < 0) {
+            channel.stats.skipped.incrementAndGet();
+            return null;
+        }
+        if (channel.inFlight != null && !channel.inFlight.isDone()) {
+            channel.stats.failed.incrementAndGet();
+            failed(channel, "still busy with an earlier notification");
+            return null;
+        }
+        channel.inFlight = channel.executor.submit(() -> {
+            channel.sink.deliver(notification);
+            return null;
+        });
+        return channel.inFlight;
+    }
+    
+    private void succeeded(Channel channel) {
+        if (channel.consecutiveFailures >= FAILURES_TO_OPEN) {
+            System.out.println("Notification sink " + channel.sink.getName() + " recovered");
+        }
+        channel.consecutiveFailures = 0;
+        channel.stats.circuitOpen = false;
+    }
+    
+    private void failed(Channel channel, String reason) {
+        System.err.println("✗ Notification via " + channel.sink.getName() + " failed: " + reason);
+        channel.consecutiveFailures++;
+        if (channel.consecutiveFailures >= FAILURES_TO_OPEN) {
+            channel.openUntilNanos = System.nanoTime() + OPEN_NANOS;
+            channel.stats.circuitOpen = true;
+            System.err.println("Skipping notification sink " + channel.sink.getName() + " for "
+                               + TimeUnit.NANOSECONDS.toSeconds(OPEN_NANOS) + " seconds after "
+                               + channel.consecutiveFailures + " failures in a row");
+        }
+    }
+}
\ No newline at end of file
@@ -1,17 +1,35 @@
 package com.habittracker;
 
-import java.awt.*;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.TimeUnit;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class NotificationService {
-    private Timer timer;
+    private static final String TITLE = "Habit Tracker Reminder";
+    private static final long CLOSE_WAIT_MILLIS = 10_000;
+    private static final Metrics.Histogram TICK_TIME = Metrics.histogram("notify.tick.time", Metrics.Unit.NANOS);
+    private static final Metrics.Counter SENT = Metrics.counter("notify.sent");
+    private static final Metrics.Counter SKIPPED = Metrics.counter("notify.skipped.done");
+    
+    private AlertScheduler scheduler;
     private final HabitService habitService;
+    private final NotificationPipeline pipeline;
     
     public NotificationService(HabitService habitService) {
+        this(habitService, NotificationSinks.configured());
+    }
+    
+    NotificationService(HabitService habitService, NotificationPipeline pipeline) {
         this.habitService = habitService;
+        this.pipeline = pipeline;
+        Metrics.gauge("notify.queued", pipeline::getQueued);
+        Metrics.gauge("notify.dropped", pipeline::getDropped);
     }
     
     public void startNotifications() {
@@ -21,150 +39,139 @@ public class NotificationService {
     public void startNotifications(boolean keepAlive) {
         stopNotifications();
         
+        List<AlertScheduler.Alert> alerts = new ArrayList<>();
         habitService.getAlertSettings().ifPresent(settings -> {
             if (settings.isEnabled()) {
-                scheduleNotification(settings.getAlertTime(), keepAlive);
+                for (LocalTime time : settings.getAlertTimes()) {
+                    alerts.add(AlertScheduler.Alert.daily(time));
+                }
             }
         });
+        for (Habit habit : habitService.listHabits()) {
+            Reminder reminder = habit.getReminder();
+            if (reminder != null) {
+                for (LocalTime time : reminder.getTimes()) {
+                    alerts.add(AlertScheduler.Alert.forHabit(habit.getName(), time, reminder.getDays()));
+                }
+            }
+        }
+        
+        if (!alerts.isEmpty()) {
+            scheduleNotifications(alerts, keepAlive);
+        }
     }
     
-    public void stopNotifications() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+    public synchronized void stopNotifications() {
+        if (scheduler != null) {
+            scheduler.stop();
+            scheduler = null;
         }
     }
     
-    private void scheduleNotification(LocalTime alertTime, boolean keepAlive) {
-        if (!SystemTray.isSupported()) {
-            System.err.println("System tray is not supported on this platform");
+    private synchronized void scheduleNotifications(List<AlertScheduler.Alert> alerts, boolean keepAlive) {
+        if (pipeline.isEmpty()) {
+            System.err.println("No notification sinks configured, see habittracker.notify.sinks");
             return;
         }
         
-        if (keepAlive) {
-            System.out.printf("Scheduling notifications for %s (checking every minute)%n", alertTime);
-        }
+        // One thread sleeping until the next due alert, however many there are
+        scheduler = new AlertScheduler(alerts, this::showAlerts, keepAlive, Clock.systemDefaultZone());
+        scheduler.start();
         
-        timer = new Timer(!keepAlive); // Use daemon timer unless keepAlive is true
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                LocalTime now = LocalTime.now();
-                if (now.getHour() == alertTime.getHour() && 
-                    now.getMinute() == alertTime.getMinute()) {
-                    System.out.printf("Alert time reached: %s - showing notification%n", now);
-                    showNotification();
-                }
-            }
-        }, 0, TimeUnit.MINUTES.toMillis(1));
+        if (keepAlive && scheduler.nextDue() != null) {
+            System.out.printf("Scheduling %d notification time%s (next at %s)%n",
+                              scheduler.size(), scheduler.size() == 1 ? "" : "s",
+                              scheduler.nextDue().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        }
     }
     
-    private void showNotification() {
-        int habitCount = habitService.listHabits().size();
-        String message = String.format("Time to check your %d habit%s!", 
-                                     habitCount, habitCount == 1 ? "" : "s");
-        
-        // Try AppleScript notification first (works better on macOS)
-        if (showAppleScriptNotification(message)) {
-            System.out.println("✓ Notification sent via AppleScript");
-            return;
+    /**
+     * One notification for the global alert and one listing every habit whose
+     * reminder is due, however many fell on the same time. Habits already
+     * completed today are left out, and nothing is shown if none are left.
+     */
+    private void showAlerts(List<AlertScheduler.Alert> due) {
+        long started = Metrics.startTimer();
+        System.out.printf("Alert time reached: %s - showing notification%n", due);
+        List<String> unfinished;
+        // The daemon applies commands and reloads under the service's monitor
+        synchronized (habitService) {
+            unfinished = habitService.unfinishedHabits(LocalDate.now());
         }
         
-        // Fallback to SystemTray notification
-        if (showSystemTrayNotification(message)) {
-            System.out.println("✓ Notification sent via SystemTray");
-            return;
+        if (due.stream().anyMatch(alert -> alert.getHabitName() == null)) {
+            showNotification(unfinished);
         }
-        
-        System.err.println("✗ Failed to send notification via any method");
+        Set<String> reminded = due.stream()
+            .map(AlertScheduler.Alert::getHabitName)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        List<String> habits = unfinished.stream()
+            .filter(reminded::contains)
+            .collect(Collectors.toList());
+        if (!habits.isEmpty()) {
+            showNotification("Time for " + listNames(habits));
+        } else if (!reminded.isEmpty()) {
+            SKIPPED.increment();
+            System.out.println("Reminded habits are already done today - no notification");
+        }
+        TICK_TIME.recordSince(started);
     }
     
-    private boolean showAppleScriptNotification(String message) {
-        try {
-            String osName = System.getProperty("os.name").toLowerCase();
-            if (!osName.contains("mac")) {
-                return false; // Only works on macOS
-            }
-            
-            System.out.println("Trying AppleScript notification...");
-            
-            String script = String.format(
-                "display notification \"%s\" with title \"Habit Tracker Reminder\"", 
-                message.replace("\"", "\\\"")
-            );
-            
-            ProcessBuilder pb = new ProcessBuilder("osascript", "-e", script);
-            Process process = pb.start();
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                System.out.println("AppleScript notification sent successfully");
-                return true;
-            } else {
-                System.out.println("AppleScript notification failed with exit code: " + exitCode);
-                return false;
-            }
-            
-        } catch (Exception e) {
-            System.out.println("AppleScript notification failed: " + e.getMessage());
-            return false;
+    private static String listNames(List<String> habits) {
+        if (habits.size() == 1) {
+            return habits.get(0);
         }
+        int shown = Math.min(habits.size(), 3);
+        String names = String.join(", ", habits.subList(0, shown - 1));
+        String last = habits.size() > shown ? habits.get(shown - 1) + " and " + (habits.size() - shown) + " more"
+                                            : habits.get(shown - 1);
+        return names + (habits.size() > shown ? ", " : " and ") + last;
     }
     
-    private boolean showSystemTrayNotification(String message) {
-        try {
-            if (!SystemTray.isSupported()) {
-                System.out.println("SystemTray not supported");
-                return false;
-            }
-            
-            System.out.println("Trying SystemTray notification...");
-            
-            SystemTray tray = SystemTray.getSystemTray();
-            Image image = createNotificationIcon();
-            
-            TrayIcon trayIcon = new TrayIcon(image, "Habit Tracker");
-            trayIcon.setImageAutoSize(true);
-            trayIcon.setToolTip("Habit Tracker Reminder");
-            
-            tray.add(trayIcon);
-            
-            trayIcon.displayMessage("Habit Tracker Reminder", message, 
-                                   TrayIcon.MessageType.INFO);
-            
-            // Remove tray icon after 5 seconds
-            Timer removeTimer = new Timer();
-            removeTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    tray.remove(trayIcon);
-                    removeTimer.cancel();
-                }
-            }, 5000);
-            
-            return true;
-            
-        } catch (Exception e) {
-            System.out.println("SystemTray notification failed: " + e.getMessage());
-            return false;
+    private void showNotification(List<String> unfinished) {
+        if (unfinished.isEmpty()) {
+            SKIPPED.increment();
+            System.out.println("All habits are done today - no notification");
+            return;
         }
+        showNotification(String.format("Still to do today: %s", listNames(unfinished)));
     }
     
-    private Image createNotificationIcon() {
-        // Create a simple 16x16 green circle icon
-        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(16, 16, java.awt.image.BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = image.createGraphics();
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setColor(Color.GREEN);
-        g2d.fillOval(2, 2, 12, 12);
-        g2d.setColor(Color.DARK_GRAY);
-        g2d.drawOval(2, 2, 12, 12);
-        g2d.dispose();
-        return image;
+    private void showNotification(String message) {
+        // Delivery happens on the pipeline's threads, so a slow sink never holds up the scheduler
+        if (pipeline.submit(new Notification(TITLE, message))) {
+            SENT.increment();
+        } else {
+            System.err.println("✗ Notification dropped, the queue is full: " + message);
+        }
+    }
+    
+    /**
+     * Delivery counters and latency of each notification sink
+     */
+    List<NotificationPipeline.SinkStats> sinkStats() {
+        return pipeline.stats();
+    }
+    
+    List<String> sinkNames() {
+        return pipeline.sinkNames();
+    }
+    
+    /**
+     * Stop the scheduler and deliver what is still queued
+     */
+    public void close() {
+        stopNotifications();
+        pipeline.close(CLOSE_WAIT_MILLIS);
     }
     
     public void testNotification() {
         System.out.println("Sending test notification...");
-        showNotification();
+        List<String> unfinished = habitService.unfinishedHabits(LocalDate.now());
+        showNotification(unfinished.isEmpty() ? "All habits are done today!"
+                                               : "Still to do today: " + listNames(unfinished));
+        // Waits for the delivery, which reports how each sink did
+        close();
     }
 }
\ No newline at end of file
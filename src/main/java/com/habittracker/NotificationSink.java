@@ -0,0 +1,20 @@
+package com.habittracker;
+
+/**
+ * Somewhere notifications are shown or recorded. NotificationPipeline calls
+ * deliver on a thread of the sink's own, one notification at a time, and
+ * gives up on it after the sink's timeout, so an implementation may block.
+ */
+public interface NotificationSink {
+    String getName();
+    
+    /**
+     * Show or record one notification
+     *
+     * @throws Exception if it could not be delivered
+     */
+    void deliver(Notification notification) throws Exception;
+    
+    default void close() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.habittracker;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.SystemTray;
+import java.awt.TrayIcon;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The built-in notification sinks, and the pipeline the
+ * habittracker.notify.sinks property asks for: a comma separated list of
+ * <ul>
+ * <li>{@code log} or {@code log:<file>} - a line on stdout (the daemon log) or in a file</li>
+ * <li>{@code file:<path>} - a tab separated line in a file or named pipe, for scripts</li>
+ * <li>{@code notify-send}, {@code osascript} - desktop notifications on Linux and macOS</li>
+ * <li>{@code command:<program> <args>} - any program, with {title} and {message} in its arguments</li>
+ * <li>{@code tray} - a Java system tray message</li>
+ * </ul>
+ * The default, {@code auto}, logs and adds the desktop notifier the platform
+ * has. Each sink's timeout can be set with habittracker.notify.&lt;sink&gt;.timeoutMs.
+ */
+final class NotificationSinks {
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private NotificationSinks() {
+    }
+    
+    static NotificationPipeline configured() {
+        String spec = System.getProperty("habittracker.notify.sinks", "auto");
+        NotificationPipeline pipeline = new NotificationPipeline();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            if ("auto".equalsIgnoreCase(part)) {
+                for (NotificationSink sink : platformDefaults()) {
+                    add(pipeline, sink);
+                }
+                continue;
+            }
+            try {
+                add(pipeline, parse(part));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring notification sink '" + part + "': " + e.getMessage());
+            }
+        }
+        return pipeline;
+    }
+    
+    private static void add(NotificationPipeline pipeline, NotificationSink sink) {
+        long defaultTimeout = sink instanceof CommandSink || sink instanceof TraySink ? 5000 : 2000;
+        pipeline.add(sink, Long.getLong("habittracker.notify." + sink.getName() + ".timeoutMs", defaultTimeout));
+    }
+    
+    private static NotificationSink parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = (colon < 0 ? spec : spec.substring(0, colon)).toLowerCase();
+        String argument = colon < 0 ? null : spec.substring(colon + 1).trim();
+        switch (kind) {
+            case "log":
+                return argument == null ? log(System.out) : new FileSink("log", Paths.get(argument), false);
+            case "file":
+                if (argument == null || argument.isEmpty()) {
+                    throw new IllegalArgumentException("file needs a path, e.g. file:/tmp/habit-alerts");
+                }
+                return new FileSink("file", Paths.get(argument), true);
+            case "notify-send":
+                return notifySend();
+            case "osascript":
+                return osascript();
+            case "command":
+                if (argument == null || argument.isEmpty()) {
+                    throw new IllegalArgumentException("command needs a program, e.g. command:say {message}");
+                }
+                return command(argument);
+            case "tray":
+                if (!SystemTray.isSupported()) {
+                    throw new IllegalArgumentException("the system tray is not supported on this platform");
+                }
+                return new TraySink();
+            default:
+                throw new IllegalArgumentException("unknown sink, use log, file, notify-send, osascript, command or tray");
+        }
+    }
+    
+    /**
+     * A log line, plus osascript on macOS, notify-send where it is installed
+     * with a display, or else the system tray if there is one
+     */
+    static List<NotificationSink> platformDefaults() {
+        List<NotificationSink> sinks = new ArrayList<>();
+        sinks.add(log(System.out));
+        String osName = System.getProperty("os.name", "").toLowerCase();
+        if (osName.contains("mac")) {
+            sinks.add(osascript());
+        } else if ((System.getenv("DISPLAY") != null || System.getenv("WAYLAND_DISPLAY") != null)
+                   && onPath("notify-send")) {
+            sinks.add(notifySend());
+        } else if (SystemTray.isSupported()) {
+            sinks.add(new TraySink());
+        }
+        return sinks;
+    }
+    
+    private static boolean onPath(String program) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            if (Files.isExecutable(Paths.get(dir, program))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static NotificationSink log(PrintStream out) {
+        return new NotificationSink() {
+            @Override
+            public String getName() {
+                return "log";
+            }
+            
+            @Override
+            public void deliver(Notification notification) {
+                out.printf("[%s] %s%n", LocalDateTime.now().format(TIMESTAMP), notification);
+            }
+        };
+    }
+    
+    static NotificationSink notifySend() {
+        return new CommandSink("notify-send", n -> Arrays.asList(
+            "notify-send", "--app-name=Habit Tracker", n.getTitle(), n.getMessage()));
+    }
+    
+    static NotificationSink osascript() {
+        return new CommandSink("osascript", n -> Arrays.asList("osascript", "-e", String.format(
+            "display notification \"%s\" with title \"%s\"", escapeAppleScript(n.getMessage()), escapeAppleScript(n.getTitle()))));
+    }
+    
+    private static String escapeAppleScript(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+    
+    /**
+     * Run a program for every notification, the arguments split on spaces and
+     * {title} and {message} replaced in each
+     */
+    static NotificationSink command(String template) {
+        List<String> parts = Arrays.asList(template.trim().split("\\s+"));
+        return new CommandSink("command", n -> {
+            List<String> command = new ArrayList<>(parts.size());
+            for (String part : parts) {
+                command.add(part.replace("{title}", n.getTitle()).replace("{message}", n.getMessage()));
+            }
+            return command;
+        });
+    }
+    
+    /**
+     * Runs a program and fails unless it exits with 0. An interrupt from the
+     * pipeline's timeout kills the program.
+     */
+    private static final class CommandSink implements NotificationSink {
+        private final String name;
+        private final Function<Notification, List<String>> command;
+        
+        CommandSink(String name, Function<Notification, List<String>> command) {
+            this.name = name;
+            this.command = command;
+        }
+        
+        @Override
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        public void deliver(Notification notification) throws IOException, InterruptedException {
+            ProcessBuilder pb = new ProcessBuilder(command.apply(notification));
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            Process process = pb.start();
+            try {
+                int exitCode = process.waitFor();
+                if (exitCode != 0) {
+                    throw new IOException(pb.command().get(0) + " exited with code " + exitCode);
+                }
+            } finally {
+                process.destroyForcibly();
+            }
+        }
+    }
+    
+    /**
+     * Appends a line per notification. The file is opened for each one, so a
+     * named pipe works as well as a regular file, and blocks until it has a
+     * reader, which the pipeline's timeout bounds.
+     */
+    private static final class FileSink implements NotificationSink {
+        private final String name;
+        private final Path path;
+        private final boolean tabSeparated;
+        
+        FileSink(String name, Path path, boolean tabSeparated) {
+            this.name = name;
+            this.path = path;
+            this.tabSeparated = tabSeparated;
+        }
+        
+        @Override
+        public String getName() {
+            return name;
+        }
+        
+        @Override
+        public void deliver(Notification notification) throws IOException {
+            String timestamp = LocalDateTime.now().format(TIMESTAMP);
+            String line = tabSeparated
+                ? timestamp + "\t" + oneLine(notification.getTitle()) + "\t" + oneLine(notification.getMessage())
+                : "[" + timestamp + "] " + oneLine(notification.toString());
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                                                         StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        
+        private static String oneLine(String text) {
+            return text.replace('\t', ' ').replace('\n', ' ');
+        }
+    }
+    
+    /**
+     * Shows tray balloon messages from one tray icon, added with the first
+     * notification and removed when the pipeline closes
+     */
+    private static final class TraySink implements NotificationSink {
+        private TrayIcon trayIcon;
+        
+        @Override
+        public String getName() {
+            return "tray";
+        }
+        
+        @Override
+        public synchronized void deliver(Notification notification) throws Exception {
+            if (trayIcon == null) {
+                TrayIcon icon = new TrayIcon(createIcon(), "Habit Tracker");
+                icon.setImageAutoSize(true);
+                icon.setToolTip("Habit Tracker Reminder");
+                SystemTray.getSystemTray().add(icon);
+                trayIcon = icon;
+            }
+            trayIcon.displayMessage(notification.getTitle(), notification.getMessage(), TrayIcon.MessageType.INFO);
+        }
+        
+        @Override
+        public synchronized void close() {
+            if (trayIcon != null) {
+                SystemTray.getSystemTray().remove(trayIcon);
+                trayIcon = null;
+            }
+        }
+        
+        private static BufferedImage createIcon() {
+            // A simple 16x16 green circle
+            BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setColor(Color.GREEN);
+            g2d.fillOval(2, 2, 12, 12);
+            g2d.setColor(Color.DARK_GRAY);
+            g2d.drawOval(2, 2, 12, 12);
+            g2d.dispose();
+            return image;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,343 @@
+package com.habittracker;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * An immutable hash array mapped trie. {@link #with} and {@link #without}
+ * copy only the nodes on the path to the changed key, at most seven small
+ * arrays, and share everything else with the map they were called on. Every
+ * version stays valid, and as all fields are final a version can be read
+ * from any thread once it has been handed over. That does not make the
+ * HabitData holding it thread-safe, see HabitService.
+ *
+ * <p>The trie takes the hash code five bits at a time from the top, so the
+ * map iterates in unsigned hash order: ascending for non-negative Integer
+ * keys. Keys and values must not be null. The Map mutators are unsupported.
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    // The top chunk holds the 2 bits left over from 6 chunks of 5
+    private static final int TOP_SHIFT = 30;
+    // Root, leaves up to 7 levels of nodes, and a collision node
+    private static final int MAX_DEPTH = 9;
+    
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new Node(0, new Object[0]), 0);
+    
+    private final Node root;
+    private final int size;
+    
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+    
+    /**
+     * The entries of the given map, which may be null, as a persistent map
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        PersistentMap<K, V> copy = empty();
+        if (map != null) {
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                copy = copy.with(entry.getKey(), entry.getValue());
+            }
+        }
+        return copy;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return key == null ? null : (V) root.get(key.hashCode(), key, TOP_SHIFT);
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+    
+    /**
+     * A map with the key set to the value, or this map if it already was
+     */
+    PersistentMap<K, V> with(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("PersistentMap keys and values must not be null");
+        }
+        Object previous = get(key);
+        if (previous == value) {
+            return this;
+        }
+        Node updated = root.with(key.hashCode(), key, value, TOP_SHIFT);
+        return new PersistentMap<>(updated, previous == null ? size + 1 : size);
+    }
+    
+    /**
+     * A map without the key, or this map if it has no such key
+     */
+    PersistentMap<K, V> without(Object key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        Node updated = root.without(key.hashCode(), key, TOP_SHIFT);
+        return updated != null ? new PersistentMap<>(updated, size - 1) : empty();
+    }
+    
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new TrieIterator<>((key, value) -> new SimpleImmutableEntry<>((K) key, (V) value));
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<K> iterator() {
+                return new TrieIterator<>((key, value) -> (K) key);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+            
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+        };
+    }
+    
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<V> iterator() {
+                return new TrieIterator<>((key, value) -> (V) value);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+    
+    /**
+     * A trie node: its array holds a key and value pair per occupied slot, or
+     * null and the child node for slots whose keys go one level further down.
+     * A collision node, for keys whose whole hash codes are equal, has no
+     * bitmap and only pairs.
+     */
+    private static final class Node {
+        private final int bitmap;
+        private final Object[] array;
+        
+        Node(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+        
+        Object get(int hash, Object key, int shift) {
+            if (shift < 0) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) {
+                        return array[i + 1];
+                    }
+                }
+                return null;
+            }
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int slot = slot(bit);
+            Object slotKey = array[slot];
+            if (slotKey == null) {
+                return ((Node) array[slot + 1]).get(hash, key, shift - BITS);
+            }
+            return key.equals(slotKey) ? array[slot + 1] : null;
+        }
+        
+        Node with(int hash, Object key, Object value, int shift) {
+            if (shift < 0) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) {
+                        return withSlot(i + 1, value);
+                    }
+                }
+                return new Node(0, inserted(array.length, key, value));
+            }
+            int bit = bit(hash, shift);
+            int slot = slot(bit);
+            if ((bitmap & bit) == 0) {
+                return new Node(bitmap | bit, inserted(slot, key, value));
+            }
+            Object slotKey = array[slot];
+            Object slotValue = array[slot + 1];
+            if (slotKey == null) {
+                return withSlot(slot + 1, ((Node) slotValue).with(hash, key, value, shift - BITS));
+            }
+            if (key.equals(slotKey)) {
+                return withSlot(slot + 1, value);
+            }
+            // Two keys in one slot: push both down a level
+            Node child = new Node(0, new Object[0])
+                .with(slotKey.hashCode(), slotKey, slotValue, shift - BITS)
+                .with(hash, key, value, shift - BITS);
+            Object[] copy = array.clone();
+            copy[slot] = null;
+            copy[slot + 1] = child;
+            return new Node(bitmap, copy);
+        }
+        
+        /**
+         * The node without the key, which it must contain, or null if that
+         * leaves it empty
+         */
+        Node without(int hash, Object key, int shift) {
+            if (shift < 0) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) {
+                        return array.length == 2 ? null : new Node(0, removed(i));
+                    }
+                }
+                return this;
+            }
+            int bit = bit(hash, shift);
+            int slot = slot(bit);
+            Object slotKey = array[slot];
+            if (slotKey != null) {
+                return bitmap == bit ? null : new Node(bitmap & ~bit, removed(slot));
+            }
+            Node child = ((Node) array[slot + 1]).without(hash, key, shift - BITS);
+            if (child == null) {
+                return bitmap == bit ? null : new Node(bitmap & ~bit, removed(slot));
+            }
+            if (child.array.length == 2 && child.array[0] != null) {
+                // A child down to one pair folds back into this node
+                Object[] copy = array.clone();
+                copy[slot] = child.array[0];
+                copy[slot + 1] = child.array[1];
+                return new Node(bitmap, copy);
+            }
+            return withSlot(slot + 1, child);
+        }
+        
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & ((1 << BITS) - 1));
+        }
+        
+        private int slot(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+        
+        private Node withSlot(int index, Object value) {
+            Object[] copy = array.clone();
+            copy[index] = value;
+            return new Node(bitmap, copy);
+        }
+        
+        private Object[] inserted(int slot, Object key, Object value) {
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, slot);
+            copy[slot] = key;
+            copy[slot + 1] = value;
+            System.arraycopy(array, slot, copy, slot + 2, array.length - slot);
+            return copy;
+        }
+        
+        private Object[] removed(int slot) {
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, slot);
+            System.arraycopy(array, slot + 2, copy, slot, array.length - slot - 2);
+            return copy;
+        }
+    }
+    
+    /**
+     * Walks the trie depth first, in slot order, with an explicit stack,
+     * turning each pair into an element
+     */
+    private final class TrieIterator<T> implements Iterator<T> {
+        private final BiFunction<Object, Object, T> element;
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private T next;
+        
+        TrieIterator(BiFunction<Object, Object, T> element) {
+            this.element = element;
+            arrays[0] = root.array;
+            advance();
+        }
+        
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (array[position] != null) {
+                    next = element.apply(array[position], array[position + 1]);
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node) array[position + 1]).array;
+                positions[depth] = 0;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T element = next;
+            advance();
+            return element;
+        }
+    }
+}
\ No newline at end of file
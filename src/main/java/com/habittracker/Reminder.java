@@ -0,0 +1,93 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * A habit's own reminder schedule: one or more times of day, on some or all
+ * days of the week
+ */
+public class Reminder {
+    private final List<LocalTime> times;
+    private final Set<DayOfWeek> days;
+    
+    @JsonCreator
+    public Reminder(@JsonProperty("times") Collection<LocalTime> times,
+                    @JsonProperty("days") Collection<DayOfWeek> days) {
+        if (times == null || times.isEmpty()) {
+            throw new IllegalArgumentException("A reminder needs at least one time");
+        }
+        this.times = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(times)));
+        this.days = Collections.unmodifiableSet(days == null || days.isEmpty()
+            ? EnumSet.allOf(DayOfWeek.class) : EnumSet.copyOf(days));
+    }
+    
+    public List<LocalTime> getTimes() {
+        return times;
+    }
+    
+    public Set<DayOfWeek> getDays() {
+        return days;
+    }
+    
+    /**
+     * The days as a bit mask, Monday in bit 0
+     */
+    int dayMask() {
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= 1 << (day.getValue() - 1);
+        }
+        return mask;
+    }
+    
+    static Set<DayOfWeek> daysOf(int mask) {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((mask & 1 << (day.getValue() - 1)) != 0) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Reminder other = (Reminder) o;
+        return times.equals(other.times) && days.equals(other.days);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * times.hashCode() + days.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        String at = times.stream().map(LocalTime::toString).collect(Collectors.joining(", "));
+        if (days.size() == DayOfWeek.values().length) {
+            return at + " every day";
+        }
+        return at + " on " + days.stream()
+            .map(day -> day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH))
+            .collect(Collectors.joining(", "));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.habittracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every habit's status for one date, built by HabitService.statusReport in a
+ * single pass and rendered by the status command.
+ */
+public class StatusReport {
+    private final LocalDate date;
+    private final List<Entry> entries;
+    
+    public StatusReport(LocalDate date, List<Entry> entries) {
+        this.date = date;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    public List<Entry> getEntries() {
+        return entries;
+    }
+    
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+    
+    public static class Entry {
+        private final String habitName;
+        private final boolean logged;
+        private final int currentStreak;
+        private final int longestStreak;
+        
+        public Entry(String habitName, boolean logged, int currentStreak, int longestStreak) {
+            this.habitName = habitName;
+            this.logged = logged;
+            this.currentStreak = currentStreak;
+            this.longestStreak = longestStreak;
+        }
+        
+        public String getHabitName() {
+            return habitName;
+        }
+        
+        public boolean isLogged() {
+            return logged;
+        }
+        
+        public int getCurrentStreak() {
+            return currentStreak;
+        }
+        
+        public int getLongestStreak() {
+            return longestStreak;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Entry{habit='%s', logged=%s, streak=%d, best=%d}",
+                               habitName, logged, currentStreak, longestStreak);
+        }
+    }
+}
\ No newline at end of file
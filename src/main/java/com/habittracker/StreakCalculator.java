@@ -1,59 +1,66 @@
 package com.habittracker;
 
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Streak lengths from a habit's logs. The list overloads walk the sorted
+ * completion dates directly and share no code with CompletionBitset, so
+ * they serve as the reference the cached summaries are verified against.
+ * The bitset overloads are the fast path.
+ */
 public class StreakCalculator {
     
     public static int calculateCurrentStreak(String habitName, List<HabitLog> logs, LocalDate referenceDate) {
-        List<LocalDate> completedDates = logs.stream()
-            .filter(log -> log.getHabitName().equals(habitName) && log.isCompleted())
-            .map(HabitLog::getDate)
-            .sorted()
-            .collect(Collectors.toList());
-        
-        if (completedDates.isEmpty()) {
-            return 0;
-        }
+        Set<LocalDate> completedDates = new HashSet<>(completedDates(habitName, logs));
         
         int streak = 0;
         LocalDate currentDate = referenceDate;
-        
         while (completedDates.contains(currentDate)) {
             streak++;
             currentDate = currentDate.minusDays(1);
         }
-        
         return streak;
     }
     
     public static int calculateLongestStreak(String habitName, List<HabitLog> logs) {
-        List<LocalDate> completedDates = logs.stream()
-            .filter(log -> log.getHabitName().equals(habitName) && log.isCompleted())
-            .map(HabitLog::getDate)
-            .sorted()
-            .collect(Collectors.toList());
-        
+        List<LocalDate> completedDates = completedDates(habitName, logs);
         if (completedDates.isEmpty()) {
             return 0;
         }
         
         int longestStreak = 1;
         int currentStreak = 1;
-        
         for (int i = 1; i < completedDates.size(); i++) {
             LocalDate prevDate = completedDates.get(i - 1);
             LocalDate currentDate = completedDates.get(i);
             
             if (currentDate.equals(prevDate.plusDays(1))) {
                 currentStreak++;
-            } else {
+            } else if (!currentDate.equals(prevDate)) {
                 longestStreak = Math.max(longestStreak, currentStreak);
                 currentStreak = 1;
             }
         }
-        
         return Math.max(longestStreak, currentStreak);
     }
+    
+    private static List<LocalDate> completedDates(String habitName, List<HabitLog> logs) {
+        return logs.stream()
+            .filter(log -> log.getHabitName().equals(habitName) && log.isCompleted())
+            .map(HabitLog::getDate)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+    
+    public static int calculateCurrentStreak(CompletionBitset completions, LocalDate referenceDate) {
+        return completions.runEndingAt(referenceDate);
+    }
+    
+    public static int calculateLongestStreak(CompletionBitset completions) {
+        return completions.longestRun();
+    }
 }
\ No newline at end of file
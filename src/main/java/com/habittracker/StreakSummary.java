@@ -0,0 +1,115 @@
+package com.habittracker;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Cached streak state for one habit: the most recent run of completed days
+ * (its end date and length) and the longest run ever. Kept up to date on each
+ * log so status and log output never have to rescan history.
+ */
+public class StreakSummary {
+    public static final StreakSummary EMPTY = new StreakSummary(null, 0, 0);
+    private static final Metrics.Histogram FULL_TIME = Metrics.histogram("streak.full.time", Metrics.Unit.NANOS);
+    private static final Metrics.Histogram INCREMENTAL_TIME = Metrics.histogram("streak.incremental.time", Metrics.Unit.NANOS);
+    
+    private final LocalDate currentRunEnd;
+    private final int currentLength;
+    private final int longestRun;
+    
+    @JsonCreator
+    public StreakSummary(@JsonProperty("currentRunEnd") LocalDate currentRunEnd,
+                         @JsonProperty("currentLength") int currentLength,
+                         @JsonProperty("longestRun") int longestRun) {
+        this.currentRunEnd = currentRunEnd;
+        this.currentLength = currentLength;
+        this.longestRun = longestRun;
+    }
+    
+    /**
+     * Full recomputation from a habit's completions
+     */
+    public static StreakSummary of(CompletionBitset completions) {
+        long started = Metrics.startTimer();
+        LocalDate last = completions.lastSet();
+        if (last == null) {
+            return EMPTY;
+        }
+        StreakSummary summary = new StreakSummary(last, completions.runEndingAt(last), completions.longestRun());
+        FULL_TIME.recordSince(started);
+        return summary;
+    }
+    
+    /**
+     * The summary after the given date was marked completed. The completions
+     * must already include it; only the run through that date is scanned, which
+     * also covers a back-dated log that joins two runs.
+     */
+    public StreakSummary afterCompleting(LocalDate date, CompletionBitset completions) {
+        long started = Metrics.startTimer();
+        int before = completions.runEndingAt(date);
+        int after = completions.runStartingAt(date);
+        int run = before + after - 1;
+        LocalDate runEnd = date.plusDays(after - 1);
+        
+        StreakSummary summary = currentRunEnd == null || !runEnd.isBefore(currentRunEnd)
+            ? new StreakSummary(runEnd, run, Math.max(longestRun, run))
+            : new StreakSummary(currentRunEnd, currentLength, Math.max(longestRun, run));
+        INCREMENTAL_TIME.recordSince(started);
+        return summary;
+    }
+    
+    public LocalDate getCurrentRunEnd() {
+        return currentRunEnd;
+    }
+    
+    public int getCurrentLength() {
+        return currentLength;
+    }
+    
+    public int getLongestRun() {
+        return longestRun;
+    }
+    
+    /**
+     * Streak ending on the reference date. Answered from the cached run when the
+     * date is on or after its start; older dates fall back to the bitset.
+     */
+    public int currentStreak(LocalDate referenceDate, CompletionBitset completions) {
+        if (currentRunEnd == null || referenceDate.isAfter(currentRunEnd)) {
+            return 0;
+        }
+        long daysBeforeEnd = ChronoUnit.DAYS.between(referenceDate, currentRunEnd);
+        if (daysBeforeEnd < currentLength) {
+            return (int) (currentLength - daysBeforeEnd);
+        }
+        return completions.runEndingAt(referenceDate);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StreakSummary)) {
+            return false;
+        }
+        StreakSummary other = (StreakSummary) o;
+        return currentLength == other.currentLength
+            && longestRun == other.longestRun
+            && (currentRunEnd == null ? other.currentRunEnd == null : currentRunEnd.equals(other.currentRunEnd));
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (currentRunEnd != null ? currentRunEnd.hashCode() : 0) + currentLength) + longestRun;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("StreakSummary{currentRunEnd=%s, currentLength=%d, longestRun=%d}",
+                           currentRunEnd, currentLength, longestRun);
+    }
+}
\ No newline at end of file